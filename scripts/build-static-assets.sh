@@ -0,0 +1,46 @@
+#!/usr/bin/env bash
+# Fingerprints app.js/styles.css into static/assets and precompresses the web client (gzip + brotli).
+# Works on a fresh copy of the sources in its own output directory, which Maven packages as a resource
+# root, so neither src/main/resources nor target/classes is ever edited in place and reruns start clean.
+# sw.js is deliberately left alone: a service worker is identified by its script URL, which must stay stable.
+set -euo pipefail
+
+SOURCE_DIR="${1:-src/main/resources/static}"
+STATIC_DIR="${2:-target/static-dist/static}"
+ASSETS_DIR="$STATIC_DIR/assets"
+INDEX="$STATIC_DIR/index.html"
+
+rm -rf "$STATIC_DIR"
+mkdir -p "$(dirname "$STATIC_DIR")"
+cp -R "$SOURCE_DIR" "$STATIC_DIR"
+
+if [ ! -f "$INDEX" ]; then
+  echo "No index.html in $STATIC_DIR, skipping asset pipeline"
+  exit 0
+fi
+
+mkdir -p "$ASSETS_DIR"
+
+for asset in app.js styles.css; do
+  src="$STATIC_DIR/$asset"
+  [ -f "$src" ] || continue
+  hash=$(sha256sum "$src" | cut -c1-12)
+  name="${asset%.*}.$hash.${asset##*.}"
+  mv "$src" "$ASSETS_DIR/$name"
+  sed -i "s#\"\./$asset\"#\"./assets/$name\"#g" "$INDEX"
+  echo "Fingerprinted $asset -> assets/$name"
+done
+
+for file in "$ASSETS_DIR"/* "$INDEX"; do
+  case "$file" in
+    *.gz|*.br) continue ;;
+  esac
+  gzip -9 -k -f -n "$file"
+  if command -v brotli >/dev/null 2>&1; then
+    brotli -q 11 -k -f "$file"
+  fi
+done
+
+if ! command -v brotli >/dev/null 2>&1; then
+  echo "brotli not found, only gzip variants were generated"
+fi
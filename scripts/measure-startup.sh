@@ -0,0 +1,27 @@
+#!/usr/bin/env bash
+# Measures time-to-ready of the image: starts a container, polls the readiness probe and reports the
+# wall-clock time until it answers UP, plus the application.ready.time Spring Boot publishes itself.
+# Usage: scripts/measure-startup.sh [image] [runs] [extra JAVA_OPTS]
+# Compare modes by overriding JAVA_OPTS, e.g. "-Xshare:off -Dspring.aot.enabled=false" for a plain JVM.
+set -euo pipefail
+
+IMAGE="${1:-lazygallery:latest}"
+RUNS="${2:-5}"
+JAVA_OPTS_EXTRA="${3:-}"
+PORT="${PORT:-18080}"
+NETWORK="${NETWORK:-lazygallery_default}"
+
+for run in $(seq 1 "$RUNS"); do
+  start=$(date +%s%N)
+  container=$(docker run -d --rm --network "$NETWORK" -p "$PORT:8080" \
+    -e JAVA_OPTS="$JAVA_OPTS_EXTRA" \
+    -e MINIO_ENDPOINT="${MINIO_ENDPOINT:-http://minio:9000}" \
+    "$IMAGE")
+  until curl -fs "http://localhost:$PORT/actuator/health/readiness" >/dev/null 2>&1; do
+    sleep 0.02
+  done
+  ready=$(date +%s%N)
+  boot=$(docker logs "$container" 2>&1 | grep -o 'Started LazyGalleryApplication in [0-9.]* seconds' || true)
+  echo "run $run: ready after $(( (ready - start) / 1000000 )) ms (${boot:-no startup log})"
+  docker stop "$container" >/dev/null
+done
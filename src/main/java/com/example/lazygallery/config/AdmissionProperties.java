@@ -0,0 +1,148 @@
+package com.example.lazygallery.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "app.admission")
+public class AdmissionProperties {
+
+    private boolean enabled = true;
+    private double bulkYieldAbove = 0.75;
+    private long maxTrackedClients = 100_000;
+    private Duration retryAfter = Duration.ofSeconds(2);
+    private Lane interactive = new Lane(64, Duration.ofMillis(250), 50, 200);
+    private Lane original = new Lane(32, Duration.ZERO, 10, 40);
+    private Lane upload = new Lane(8, Duration.ZERO, 5, 20);
+    private Lane archive = new Lane(4, Duration.ZERO, 0.2, 3);
+    private Lane events = new Lane(0, Duration.ZERO, 1, 5);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public double getBulkYieldAbove() {
+        return bulkYieldAbove;
+    }
+
+    public void setBulkYieldAbove(double bulkYieldAbove) {
+        this.bulkYieldAbove = bulkYieldAbove;
+    }
+
+    public long getMaxTrackedClients() {
+        return maxTrackedClients;
+    }
+
+    public void setMaxTrackedClients(long maxTrackedClients) {
+        this.maxTrackedClients = maxTrackedClients;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    public void setRetryAfter(Duration retryAfter) {
+        this.retryAfter = retryAfter;
+    }
+
+    public Lane getInteractive() {
+        return interactive;
+    }
+
+    public void setInteractive(Lane interactive) {
+        this.interactive = interactive;
+    }
+
+    public Lane getOriginal() {
+        return original;
+    }
+
+    public void setOriginal(Lane original) {
+        this.original = original;
+    }
+
+    public Lane getUpload() {
+        return upload;
+    }
+
+    public void setUpload(Lane upload) {
+        this.upload = upload;
+    }
+
+    public Lane getArchive() {
+        return archive;
+    }
+
+    public void setArchive(Lane archive) {
+        this.archive = archive;
+    }
+
+    public Lane getEvents() {
+        return events;
+    }
+
+    public void setEvents(Lane events) {
+        this.events = events;
+    }
+
+    /**
+     * One traffic class: at most {@code maxConcurrent} requests in flight (0 means unbounded), waiting up to
+     * {@code maxWait} for a slot, and a token bucket of {@code burst} requests refilled at {@code ratePerSecond}
+     * per client.
+     */
+    public static class Lane {
+
+        private int maxConcurrent;
+        private Duration maxWait;
+        private double ratePerSecond;
+        private double burst;
+
+        public Lane() {
+        }
+
+        public Lane(int maxConcurrent, Duration maxWait, double ratePerSecond, double burst) {
+            this.maxConcurrent = maxConcurrent;
+            this.maxWait = maxWait;
+            this.ratePerSecond = ratePerSecond;
+            this.burst = burst;
+        }
+
+        public int getMaxConcurrent() {
+            return maxConcurrent;
+        }
+
+        public void setMaxConcurrent(int maxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+        }
+
+        public Duration getMaxWait() {
+            return maxWait;
+        }
+
+        public void setMaxWait(Duration maxWait) {
+            this.maxWait = maxWait;
+        }
+
+        public double getRatePerSecond() {
+            return ratePerSecond;
+        }
+
+        public void setRatePerSecond(double ratePerSecond) {
+            this.ratePerSecond = ratePerSecond;
+        }
+
+        public double getBurst() {
+            return burst;
+        }
+
+        public void setBurst(double burst) {
+            this.burst = burst;
+        }
+    }
+}
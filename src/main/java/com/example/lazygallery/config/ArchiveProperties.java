@@ -0,0 +1,102 @@
+package com.example.lazygallery.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "app.archive")
+public class ArchiveProperties {
+
+    private int maxConcurrentBuilds = 2;
+    private int maxQueuedBuilds = 8;
+    private Duration waitTimeout = Duration.ofSeconds(20);
+    private Duration leaseTtl = Duration.ofMinutes(2);
+    private Duration retryAfter = Duration.ofSeconds(10);
+    private long maxTotalBytes = 20L * 1024 * 1024 * 1024;
+    private Duration evictionGrace = Duration.ofMinutes(15);
+    private Duration accessRecordInterval = Duration.ofMinutes(1);
+    private Duration prewarmWindow = Duration.ofDays(7);
+    private int prewarmMaxPerCycle = 4;
+
+    public int getMaxConcurrentBuilds() {
+        return maxConcurrentBuilds;
+    }
+
+    public void setMaxConcurrentBuilds(int maxConcurrentBuilds) {
+        this.maxConcurrentBuilds = maxConcurrentBuilds;
+    }
+
+    public int getMaxQueuedBuilds() {
+        return maxQueuedBuilds;
+    }
+
+    public void setMaxQueuedBuilds(int maxQueuedBuilds) {
+        this.maxQueuedBuilds = maxQueuedBuilds;
+    }
+
+    public Duration getWaitTimeout() {
+        return waitTimeout;
+    }
+
+    public void setWaitTimeout(Duration waitTimeout) {
+        this.waitTimeout = waitTimeout;
+    }
+
+    public Duration getLeaseTtl() {
+        return leaseTtl;
+    }
+
+    public void setLeaseTtl(Duration leaseTtl) {
+        this.leaseTtl = leaseTtl;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    public void setRetryAfter(Duration retryAfter) {
+        this.retryAfter = retryAfter;
+    }
+
+    public long getMaxTotalBytes() {
+        return maxTotalBytes;
+    }
+
+    public void setMaxTotalBytes(long maxTotalBytes) {
+        this.maxTotalBytes = maxTotalBytes;
+    }
+
+    public Duration getEvictionGrace() {
+        return evictionGrace;
+    }
+
+    public void setEvictionGrace(Duration evictionGrace) {
+        this.evictionGrace = evictionGrace;
+    }
+
+    public Duration getAccessRecordInterval() {
+        return accessRecordInterval;
+    }
+
+    public void setAccessRecordInterval(Duration accessRecordInterval) {
+        this.accessRecordInterval = accessRecordInterval;
+    }
+
+    public Duration getPrewarmWindow() {
+        return prewarmWindow;
+    }
+
+    public void setPrewarmWindow(Duration prewarmWindow) {
+        this.prewarmWindow = prewarmWindow;
+    }
+
+    public int getPrewarmMaxPerCycle() {
+        return prewarmMaxPerCycle;
+    }
+
+    public void setPrewarmMaxPerCycle(int prewarmMaxPerCycle) {
+        this.prewarmMaxPerCycle = prewarmMaxPerCycle;
+    }
+}
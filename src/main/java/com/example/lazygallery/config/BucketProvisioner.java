@@ -0,0 +1,98 @@
+package com.example.lazygallery.config;
+
+import com.example.lazygallery.storage.ObjectStorage;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Makes sure the storage buckets exist without holding up context startup. Provisioning runs in the
+ * background and retries with backoff while storage is unreachable; until it succeeds this indicator
+ * reports DOWN, and it is part of the readiness group so load balancers keep traffic away meanwhile.
+ * The retry loop runs on its own thread rather than through {@code @Async}: as a HealthIndicator this bean
+ * would get an interface-only proxy, which cannot expose the event listener.
+ */
+@Component
+@RequiredArgsConstructor
+public class BucketProvisioner implements HealthIndicator {
+
+    private static final Logger log = LoggerFactory.getLogger(BucketProvisioner.class);
+    private static final long INITIAL_BACKOFF_MS = 250;
+    private static final long MAX_BACKOFF_MS = 30_000;
+
+    private final ObjectStorage storage;
+    private final StorageProperties properties;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(newThreadFactory());
+
+    private volatile boolean provisioned;
+    private volatile String lastError;
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void start() {
+        executor.execute(this::provision);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    private void provision() {
+        long backoff = INITIAL_BACKOFF_MS;
+        long started = System.nanoTime();
+        while (!provisioned) {
+            try {
+                for (String bucket : List.of(properties.getBucketMedia(), properties.getBucketThumbnails(), properties.getBucketArchives())) {
+                    storage.ensureBucket(bucket);
+                }
+                provisioned = true;
+                lastError = null;
+                log.info("Storage buckets ready after {} ms", (System.nanoTime() - started) / 1_000_000);
+            } catch (Exception ex) {
+                lastError = ex.getMessage();
+                log.warn("Storage not ready, retrying in {} ms: {}", backoff, ex.getMessage());
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+            }
+        }
+    }
+
+    public boolean isProvisioned() {
+        return provisioned;
+    }
+
+    @Override
+    public Health health() {
+        if (provisioned) {
+            return Health.up().build();
+        }
+        Health.Builder builder = Health.down().withDetail("buckets", "provisioning");
+        if (lastError != null) {
+            builder.withDetail("error", lastError);
+        }
+        return builder.build();
+    }
+
+    private static CustomizableThreadFactory newThreadFactory() {
+        CustomizableThreadFactory factory = new CustomizableThreadFactory("bucket-provisioner-");
+        factory.setDaemon(true);
+        return factory;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.lazygallery.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "app.derivatives")
+public class DerivativeProperties {
+
+    private int batchSize = 200;
+    private int concurrency = 4;
+    private double maxPerSecond = 20;
+    private Duration staleAfter = Duration.ofMinutes(5);
+    private Duration sweepInterval = Duration.ofMinutes(15);
+    private String adminToken;
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public double getMaxPerSecond() {
+        return maxPerSecond;
+    }
+
+    public void setMaxPerSecond(double maxPerSecond) {
+        this.maxPerSecond = maxPerSecond;
+    }
+
+    public Duration getStaleAfter() {
+        return staleAfter;
+    }
+
+    public void setStaleAfter(Duration staleAfter) {
+        this.staleAfter = staleAfter;
+    }
+
+    public Duration getSweepInterval() {
+        return sweepInterval;
+    }
+
+    public void setSweepInterval(Duration sweepInterval) {
+        this.sweepInterval = sweepInterval;
+    }
+
+    public String getAdminToken() {
+        return adminToken;
+    }
+
+    public void setAdminToken(String adminToken) {
+        this.adminToken = adminToken;
+    }
+}
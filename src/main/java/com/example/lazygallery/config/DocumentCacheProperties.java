@@ -0,0 +1,66 @@
+package com.example.lazygallery.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "app.document-cache")
+public class DocumentCacheProperties {
+
+    private boolean enabled = true;
+    private long maxEntries = 10_000;
+    private Duration ttl = Duration.ofMinutes(10);
+    private Duration fallbackTtl = Duration.ofSeconds(5);
+    private Duration reconnectBackoff = Duration.ofSeconds(1);
+    private Duration maxReconnectBackoff = Duration.ofSeconds(30);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(long maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(Duration ttl) {
+        this.ttl = ttl;
+    }
+
+    public Duration getFallbackTtl() {
+        return fallbackTtl;
+    }
+
+    public void setFallbackTtl(Duration fallbackTtl) {
+        this.fallbackTtl = fallbackTtl;
+    }
+
+    public Duration getReconnectBackoff() {
+        return reconnectBackoff;
+    }
+
+    public void setReconnectBackoff(Duration reconnectBackoff) {
+        this.reconnectBackoff = reconnectBackoff;
+    }
+
+    public Duration getMaxReconnectBackoff() {
+        return maxReconnectBackoff;
+    }
+
+    public void setMaxReconnectBackoff(Duration maxReconnectBackoff) {
+        this.maxReconnectBackoff = maxReconnectBackoff;
+    }
+}
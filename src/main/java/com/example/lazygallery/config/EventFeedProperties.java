@@ -0,0 +1,75 @@
+package com.example.lazygallery.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "app.events")
+public class EventFeedProperties {
+
+    private Duration heartbeatInterval = Duration.ofSeconds(25);
+    private Duration emitterTimeout = Duration.ofMinutes(30);
+    private int maxSubscribers = 10_000;
+    private int dispatchThreads = 2;
+    private Duration sendTimeout = Duration.ofSeconds(10);
+    private int maxPendingEvents = 256;
+    private Duration resyncDelay = Duration.ofSeconds(1);
+
+    public Duration getHeartbeatInterval() {
+        return heartbeatInterval;
+    }
+
+    public void setHeartbeatInterval(Duration heartbeatInterval) {
+        this.heartbeatInterval = heartbeatInterval;
+    }
+
+    public Duration getEmitterTimeout() {
+        return emitterTimeout;
+    }
+
+    public void setEmitterTimeout(Duration emitterTimeout) {
+        this.emitterTimeout = emitterTimeout;
+    }
+
+    public int getMaxSubscribers() {
+        return maxSubscribers;
+    }
+
+    public void setMaxSubscribers(int maxSubscribers) {
+        this.maxSubscribers = maxSubscribers;
+    }
+
+    public int getDispatchThreads() {
+        return dispatchThreads;
+    }
+
+    public void setDispatchThreads(int dispatchThreads) {
+        this.dispatchThreads = dispatchThreads;
+    }
+
+    public Duration getSendTimeout() {
+        return sendTimeout;
+    }
+
+    public void setSendTimeout(Duration sendTimeout) {
+        this.sendTimeout = sendTimeout;
+    }
+
+    public int getMaxPendingEvents() {
+        return maxPendingEvents;
+    }
+
+    public void setMaxPendingEvents(int maxPendingEvents) {
+        this.maxPendingEvents = maxPendingEvents;
+    }
+
+    public Duration getResyncDelay() {
+        return resyncDelay;
+    }
+
+    public void setResyncDelay(Duration resyncDelay) {
+        this.resyncDelay = resyncDelay;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.lazygallery.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "app.flight-recorder")
+public class FlightRecorderProperties {
+
+    private boolean enabled = true;
+    private String settings = "default";
+    private Duration maxAge = Duration.ofMinutes(30);
+    private long maxSizeBytes = 256L * 1024 * 1024;
+    private Duration slowThreshold = Duration.ofMillis(20);
+    private int defaultDumpMinutes = 5;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getSettings() {
+        return settings;
+    }
+
+    public void setSettings(String settings) {
+        this.settings = settings;
+    }
+
+    public Duration getMaxAge() {
+        return maxAge;
+    }
+
+    public void setMaxAge(Duration maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    public long getMaxSizeBytes() {
+        return maxSizeBytes;
+    }
+
+    public void setMaxSizeBytes(long maxSizeBytes) {
+        this.maxSizeBytes = maxSizeBytes;
+    }
+
+    public Duration getSlowThreshold() {
+        return slowThreshold;
+    }
+
+    public void setSlowThreshold(Duration slowThreshold) {
+        this.slowThreshold = slowThreshold;
+    }
+
+    public int getDefaultDumpMinutes() {
+        return defaultDumpMinutes;
+    }
+
+    public void setDefaultDumpMinutes(int defaultDumpMinutes) {
+        this.defaultDumpMinutes = defaultDumpMinutes;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.lazygallery.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "app.lookup-filter")
+public class LookupFilterProperties {
+
+    private boolean enabled = true;
+    private double falsePositiveRate = 0.01;
+    private Duration negativeTtl = Duration.ofSeconds(30);
+    private long negativeMaxEntries = 100_000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public double getFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    public void setFalsePositiveRate(double falsePositiveRate) {
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    public Duration getNegativeTtl() {
+        return negativeTtl;
+    }
+
+    public void setNegativeTtl(Duration negativeTtl) {
+        this.negativeTtl = negativeTtl;
+    }
+
+    public long getNegativeMaxEntries() {
+        return negativeMaxEntries;
+    }
+
+    public void setNegativeMaxEntries(long negativeMaxEntries) {
+        this.negativeMaxEntries = negativeMaxEntries;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.lazygallery.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Component
+@ConfigurationProperties(prefix = "app.signing")
+public class SigningProperties {
+
+    private Duration ttl = Duration.ofHours(6);
+    private Duration expiryBucket = Duration.ofHours(1);
+    private String activeKey;
+    private boolean allowEphemeral;
+    private Map<String, String> keys = new LinkedHashMap<>();
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(Duration ttl) {
+        this.ttl = ttl;
+    }
+
+    public Duration getExpiryBucket() {
+        return expiryBucket;
+    }
+
+    public void setExpiryBucket(Duration expiryBucket) {
+        this.expiryBucket = expiryBucket;
+    }
+
+    public String getActiveKey() {
+        return activeKey;
+    }
+
+    public void setActiveKey(String activeKey) {
+        this.activeKey = activeKey;
+    }
+
+    public boolean isAllowEphemeral() {
+        return allowEphemeral;
+    }
+
+    public void setAllowEphemeral(boolean allowEphemeral) {
+        this.allowEphemeral = allowEphemeral;
+    }
+
+    public Map<String, String> getKeys() {
+        return keys;
+    }
+
+    public void setKeys(Map<String, String> keys) {
+        this.keys = keys;
+    }
+}
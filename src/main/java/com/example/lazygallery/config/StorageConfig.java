@@ -0,0 +1,37 @@
+package com.example.lazygallery.config;
+
+import com.example.lazygallery.storage.LocalObjectStorage;
+import com.example.lazygallery.storage.MinioObjectStorage;
+import com.example.lazygallery.storage.ObjectStorage;
+import io.minio.MinioClient;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Picks the storage engine when the context starts. This is deliberately a factory method rather than
+ * conditional beans: AOT processing evaluates bean conditions at build time, so a conditional engine would be
+ * frozen to whatever {@code app.storage.engine} was when the image was built.
+ */
+@Configuration
+public class StorageConfig {
+
+    @Bean
+    public ObjectStorage objectStorage(StorageProperties properties) {
+        return switch (properties.getEngine()) {
+            case "minio" -> new MinioObjectStorage(minioClient(properties), properties);
+            case "local" -> new LocalObjectStorage(properties);
+            default -> throw new IllegalStateException("Unknown app.storage.engine: " + properties.getEngine());
+        };
+    }
+
+    // Building the client does no I/O; buckets are provisioned asynchronously by BucketProvisioner
+    private static MinioClient minioClient(StorageProperties properties) {
+        MinioClient.Builder builder = MinioClient.builder()
+            .endpoint(properties.getEndpoint())
+            .credentials(properties.getAccessKey(), properties.getSecretKey());
+        if (properties.getRegion() != null && !properties.getRegion().isBlank()) {
+            builder.region(properties.getRegion());
+        }
+        return builder.build();
+    }
+}
@@ -7,6 +7,8 @@ import org.springframework.stereotype.Component;
 @ConfigurationProperties(prefix = "app.storage")
 public class StorageProperties {
 
+    private String engine = "minio";
+    private String localRoot = "data";
     private String endpoint;
     private String accessKey;
     private String secretKey;
@@ -18,6 +20,23 @@ public class StorageProperties {
     private int thumbnailWidth = 512;
     private int thumbnailHeight = 512;
     private int thumbnailQuality = 80;
+    private int thumbnailDecodeBudgetPixels = 48_000_000;
+
+    public String getEngine() {
+        return engine;
+    }
+
+    public void setEngine(String engine) {
+        this.engine = engine;
+    }
+
+    public String getLocalRoot() {
+        return localRoot;
+    }
+
+    public void setLocalRoot(String localRoot) {
+        this.localRoot = localRoot;
+    }
 
     public String getEndpoint() {
         return endpoint;
@@ -106,4 +125,12 @@ public class StorageProperties {
     public void setThumbnailQuality(int thumbnailQuality) {
         this.thumbnailQuality = thumbnailQuality;
     }
+
+    public int getThumbnailDecodeBudgetPixels() {
+        return thumbnailDecodeBudgetPixels;
+    }
+
+    public void setThumbnailDecodeBudgetPixels(int thumbnailDecodeBudgetPixels) {
+        this.thumbnailDecodeBudgetPixels = thumbnailDecodeBudgetPixels;
+    }
 }
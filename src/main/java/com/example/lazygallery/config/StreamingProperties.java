@@ -0,0 +1,75 @@
+package com.example.lazygallery.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "app.streaming")
+public class StreamingProperties {
+
+    private int bufferSize = 256 * 1024;
+    private int buffersPerTransfer = 8;
+    private int maxPooledBuffers = 256;
+    private int readerThreads = 16;
+    private long minThroughputBytesPerSecond = 16 * 1024;
+    private Duration throughputWindow = Duration.ofSeconds(30);
+    private Duration idleTimeout = Duration.ofSeconds(60);
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public int getBuffersPerTransfer() {
+        return buffersPerTransfer;
+    }
+
+    public void setBuffersPerTransfer(int buffersPerTransfer) {
+        this.buffersPerTransfer = buffersPerTransfer;
+    }
+
+    public int getMaxPooledBuffers() {
+        return maxPooledBuffers;
+    }
+
+    public void setMaxPooledBuffers(int maxPooledBuffers) {
+        this.maxPooledBuffers = maxPooledBuffers;
+    }
+
+    public int getReaderThreads() {
+        return readerThreads;
+    }
+
+    public void setReaderThreads(int readerThreads) {
+        this.readerThreads = readerThreads;
+    }
+
+    public long getMinThroughputBytesPerSecond() {
+        return minThroughputBytesPerSecond;
+    }
+
+    public void setMinThroughputBytesPerSecond(long minThroughputBytesPerSecond) {
+        this.minThroughputBytesPerSecond = minThroughputBytesPerSecond;
+    }
+
+    public Duration getThroughputWindow() {
+        return throughputWindow;
+    }
+
+    public void setThroughputWindow(Duration throughputWindow) {
+        this.throughputWindow = throughputWindow;
+    }
+
+    public Duration getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(Duration idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.lazygallery.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "app.thumbnail-cache")
+public class ThumbnailCacheProperties {
+
+    private boolean enabled = true;
+    private long memoryMaxBytes = 64L * 1024 * 1024;
+    private long memoryMaxEntryBytes = 1024L * 1024;
+    private String diskDirectory = System.getProperty("java.io.tmpdir") + "/lazygallery-thumbnails";
+    private long diskMaxBytes = 1024L * 1024 * 1024;
+    private Duration diskDeleteGrace = Duration.ofMinutes(1);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getMemoryMaxBytes() {
+        return memoryMaxBytes;
+    }
+
+    public void setMemoryMaxBytes(long memoryMaxBytes) {
+        this.memoryMaxBytes = memoryMaxBytes;
+    }
+
+    public long getMemoryMaxEntryBytes() {
+        return memoryMaxEntryBytes;
+    }
+
+    public void setMemoryMaxEntryBytes(long memoryMaxEntryBytes) {
+        this.memoryMaxEntryBytes = memoryMaxEntryBytes;
+    }
+
+    public String getDiskDirectory() {
+        return diskDirectory;
+    }
+
+    public void setDiskDirectory(String diskDirectory) {
+        this.diskDirectory = diskDirectory;
+    }
+
+    public long getDiskMaxBytes() {
+        return diskMaxBytes;
+    }
+
+    public void setDiskMaxBytes(long diskMaxBytes) {
+        this.diskMaxBytes = diskMaxBytes;
+    }
+
+    public Duration getDiskDeleteGrace() {
+        return diskDeleteGrace;
+    }
+
+    public void setDiskDeleteGrace(Duration diskDeleteGrace) {
+        this.diskDeleteGrace = diskDeleteGrace;
+    }
+}
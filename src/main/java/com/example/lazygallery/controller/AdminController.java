@@ -0,0 +1,66 @@
+package com.example.lazygallery.controller;
+
+import com.example.lazygallery.config.DerivativeProperties;
+import com.example.lazygallery.model.DerivativeJobView;
+import com.example.lazygallery.service.DerivativeBackfillService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin")
+@RequiredArgsConstructor
+public class AdminController {
+
+    private static final String ADMIN_HEADER = "X-Admin-Token";
+
+    private final DerivativeProperties props;
+    private final DerivativeBackfillService backfillService;
+
+    @GetMapping("/derivatives/backfill")
+    public DerivativeJobView backfillStatus(@RequestHeader(value = ADMIN_HEADER, required = false) String token) {
+        requireAdmin(token);
+        return backfillService.status();
+    }
+
+    @PostMapping("/derivatives/backfill")
+    public ResponseEntity<DerivativeJobView> startBackfill(@RequestHeader(value = ADMIN_HEADER, required = false) String token) {
+        requireAdmin(token);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(backfillService.start());
+    }
+
+    @PostMapping("/derivatives/backfill/pause")
+    public DerivativeJobView pauseBackfill(@RequestHeader(value = ADMIN_HEADER, required = false) String token) {
+        requireAdmin(token);
+        return backfillService.pause();
+    }
+
+    private void requireAdmin(String token) {
+        String expected = props.getAdminToken();
+        if (!StringUtils.hasText(expected) || token == null
+            || !MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8))) {
+            throw new SecurityException("Admin token required");
+        }
+    }
+
+    @ExceptionHandler(SecurityException.class)
+    public ResponseEntity<Map<String, String>> handleForbidden(SecurityException ex) {
+        return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", ex.getMessage()));
+    }
+
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<Map<String, String>> handleConflict(IllegalStateException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", ex.getMessage()));
+    }
+}
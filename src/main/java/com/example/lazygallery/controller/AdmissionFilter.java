@@ -0,0 +1,166 @@
+package com.example.lazygallery.controller;
+
+import com.example.lazygallery.service.AdmissionControl;
+import com.example.lazygallery.service.AdmissionControl.Permit;
+import com.example.lazygallery.service.AdmissionControl.TrafficClass;
+import com.example.lazygallery.service.AdmissionRejectedException;
+import com.example.lazygallery.service.FileUrlSigner;
+import com.example.lazygallery.service.ShareLookupFilter;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Classifies API requests into traffic classes and runs them through {@link AdmissionControl}. Rejected
+ * requests get 429 with {@code Retry-After} before any body is read. Permits of requests that go async
+ * (original streaming, event feeds) are held until the async request completes.
+ *
+ * <p>Token buckets are keyed by the client address, narrowed to the gallery a request is scoped to when
+ * that scope can be checked: the gallery inside a verified file token, or a share slug the lookup filter
+ * knows. Headers a client chooses freely, such as {@code X-Owner-Id}, never pick the bucket. The address
+ * is only taken from {@code X-Forwarded-For} when the peer is listed in
+ * {@code server.tomcat.remoteip.internal-proxies}; Tomcat resolves that before this filter runs.
+ */
+@Component
+@RequiredArgsConstructor
+public class AdmissionFilter extends OncePerRequestFilter {
+
+    private static final String SHARED_PREFIX = "/api/shared/";
+    private static final String SIGNED_PREVIEW_PREFIX = "/api/files/preview/";
+    private static final String SIGNED_ORIGINAL_PREFIX = "/api/files/original/";
+    private static final String SIGNED_BUNDLE_PATH = "/api/files/previews";
+    // Bundles carry their tokens in the body, which is not read before admission; one of them is repeated here
+    private static final String SCOPE_PARAMETER = "scope";
+
+    private final AdmissionControl admissionControl;
+    private final FileUrlSigner fileUrlSigner;
+    private final ShareLookupFilter shareLookupFilter;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return !path.startsWith("/api/") || path.startsWith("/api/admin/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+        throws ServletException, IOException {
+        Permit permit;
+        try {
+            permit = admissionControl.admit(classify(request), client(request));
+        } catch (AdmissionRejectedException ex) {
+            reject(response, ex);
+            return;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+            return;
+        }
+
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleasingListener(permit));
+            } else {
+                permit.release();
+            }
+        }
+    }
+
+    private TrafficClass classify(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        if (path.endsWith("/events")) {
+            return TrafficClass.EVENTS;
+        }
+        if (path.endsWith("/upload")) {
+            return TrafficClass.UPLOAD;
+        }
+        if (path.endsWith("/download")) {
+            return TrafficClass.ARCHIVE;
+        }
+        if (path.contains("/files/original/")) {
+            return TrafficClass.ORIGINAL;
+        }
+        return TrafficClass.INTERACTIVE;
+    }
+
+    private String client(HttpServletRequest request) {
+        String address = request.getRemoteAddr();
+        String path = request.getRequestURI();
+        if (path.startsWith(SIGNED_PREVIEW_PREFIX)) {
+            return signedScope(path.substring(SIGNED_PREVIEW_PREFIX.length()), FileUrlSigner.THUMBNAILS, address);
+        }
+        if (path.startsWith(SIGNED_ORIGINAL_PREFIX)) {
+            return signedScope(path.substring(SIGNED_ORIGINAL_PREFIX.length()), FileUrlSigner.MEDIA, address);
+        }
+        if (path.equals(SIGNED_BUNDLE_PATH)) {
+            return signedScope(request.getParameter(SCOPE_PARAMETER), FileUrlSigner.THUMBNAILS, address);
+        }
+        if (path.startsWith(SHARED_PREFIX)) {
+            int end = path.indexOf('/', SHARED_PREFIX.length());
+            String slug = path.substring(SHARED_PREFIX.length(), end < 0 ? path.length() : end);
+            // Made-up slugs would each get a fresh bucket, so only known shares narrow the key
+            if (shareLookupFilter.mightBeSharedGallery(slug)) {
+                return "slug:" + slug + "@" + address;
+            }
+        }
+        return "ip:" + address;
+    }
+
+    private String signedScope(String token, String bucket, String address) {
+        String objectKey;
+        try {
+            objectKey = fileUrlSigner.verify(token, bucket).objectKey();
+        } catch (IllegalArgumentException ex) {
+            // The endpoint rejects the token itself; until then it counts against the address alone
+            return "ip:" + address;
+        }
+        // Object keys start with galleries/<id>/, so every file of a gallery shares one scope
+        int galleryEnd = objectKey.indexOf('/', objectKey.indexOf('/') + 1);
+        return "signed:" + (galleryEnd < 0 ? objectKey : objectKey.substring(0, galleryEnd)) + "@" + address;
+    }
+
+    private void reject(HttpServletResponse response, AdmissionRejectedException ex) throws IOException {
+        long seconds = Math.max(1, (ex.getRetryAfter().toMillis() + 999) / 1000);
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(seconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"error\":\"too_many_requests\",\"message\":\"" + ex.getMessage() + "\"}");
+    }
+
+    private record ReleasingListener(Permit permit) implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            permit.release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            permit.release();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            permit.release();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // A re-dispatch drops listeners, so register again for the new cycle
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.example.lazygallery.controller;
+
+import com.example.lazygallery.config.StreamingProperties;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Streams large objects with non-blocking servlet writes. A reader task copies the source into a small bounded
+ * queue of pooled buffers and parks itself once the queue is full; the container drives writes through a
+ * {@link WriteListener} and the reader is resumed as buffers drain. A slow client therefore holds neither a
+ * request thread nor a reader thread, and a watchdog aborts transfers that go idle or fall below the minimum
+ * throughput so they release their storage connection.
+ */
+@Component
+public class AsyncMediaStreamer {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncMediaStreamer.class);
+    private static final long WATCHDOG_PERIOD_MS = 1000;
+
+    private final StreamingProperties props;
+    private final BlockingQueue<byte[]> pool;
+    private final ExecutorService readers;
+    private final ScheduledExecutorService watchdog;
+    private final Set<Transfer> active = ConcurrentHashMap.newKeySet();
+
+    public AsyncMediaStreamer(StreamingProperties props) {
+        this.props = props;
+        this.pool = new ArrayBlockingQueue<>(Math.max(props.getMaxPooledBuffers(), 1));
+        CustomizableThreadFactory readerFactory = new CustomizableThreadFactory("media-read-");
+        readerFactory.setDaemon(true);
+        this.readers = Executors.newFixedThreadPool(props.getReaderThreads(), readerFactory);
+        CustomizableThreadFactory watchdogFactory = new CustomizableThreadFactory("media-watchdog-");
+        watchdogFactory.setDaemon(true);
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(watchdogFactory);
+        this.watchdog.scheduleAtFixedRate(this::inspect, WATCHDOG_PERIOD_MS, WATCHDOG_PERIOD_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Takes ownership of {@code source}; status and headers must already be set on the response.
+     */
+    public void stream(HttpServletRequest request, HttpServletResponse response, InputStream source) throws IOException {
+        AsyncContext async = request.startAsync();
+        // Timeouts are enforced by the watchdog based on progress, not on total duration
+        async.setTimeout(0);
+        Transfer transfer = new Transfer(async, response.getOutputStream(), source);
+        active.add(transfer);
+        async.addListener(transfer);
+        transfer.out.setWriteListener(transfer);
+        transfer.scheduleRead();
+    }
+
+    private void inspect() {
+        long now = System.nanoTime();
+        for (Transfer transfer : active) {
+            try {
+                transfer.inspect(now);
+            } catch (Exception ex) {
+                log.debug("Streaming watchdog failed: {}", ex.getMessage());
+            }
+        }
+    }
+
+    private byte[] acquire() {
+        byte[] buffer = pool.poll();
+        return buffer != null ? buffer : new byte[props.getBufferSize()];
+    }
+
+    private void release(byte[] buffer) {
+        if (buffer.length == props.getBufferSize()) {
+            pool.offer(buffer);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+        readers.shutdownNow();
+        for (Transfer transfer : active) {
+            transfer.abort("shutdown");
+        }
+    }
+
+    private final class Transfer implements WriteListener, AsyncListener {
+
+        private final AsyncContext async;
+        private final ServletOutputStream out;
+        private final InputStream source;
+        private final BlockingQueue<Chunk> filled = new ArrayBlockingQueue<>(Math.max(props.getBuffersPerTransfer(), 1));
+        private final AtomicBoolean reading = new AtomicBoolean();
+        private volatile boolean eof;
+        private volatile boolean finished;
+        private volatile long bytesWritten;
+        private volatile long lastProgress = System.nanoTime();
+        private long windowStart = lastProgress;
+        private long windowStartBytes;
+
+        private Transfer(AsyncContext async, ServletOutputStream out, InputStream source) {
+            this.async = async;
+            this.out = out;
+            this.source = source;
+        }
+
+        private void scheduleRead() {
+            if (finished || eof || filled.remainingCapacity() == 0 || !reading.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                readers.execute(this::readChunks);
+            } catch (RejectedExecutionException ex) {
+                reading.set(false);
+                abort("reader pool unavailable");
+            }
+        }
+
+        private void readChunks() {
+            try {
+                // Single producer: capacity checked here cannot be taken by anyone else before the offer
+                while (!finished && filled.remainingCapacity() > 0) {
+                    byte[] buffer = acquire();
+                    int length = fill(buffer);
+                    if (length > 0) {
+                        filled.offer(new Chunk(buffer, length));
+                    } else {
+                        release(buffer);
+                    }
+                    if (length < buffer.length) {
+                        eof = true;
+                    }
+                    drain();
+                    if (eof) {
+                        return;
+                    }
+                }
+            } catch (IOException ex) {
+                abort("source read failed: " + ex.getMessage());
+            } finally {
+                reading.set(false);
+            }
+            // The writer may have freed space while this task was still marked as reading
+            scheduleRead();
+        }
+
+        private int fill(byte[] buffer) throws IOException {
+            int length = 0;
+            int read;
+            while (length < buffer.length && (read = source.read(buffer, length, buffer.length - length)) != -1) {
+                length += read;
+            }
+            return length;
+        }
+
+        private synchronized void drain() {
+            if (finished) {
+                return;
+            }
+            try {
+                while (out.isReady()) {
+                    Chunk chunk = filled.poll();
+                    if (chunk == null) {
+                        if (eof) {
+                            finish();
+                        }
+                        return;
+                    }
+                    out.write(chunk.data(), 0, chunk.length());
+                    bytesWritten += chunk.length();
+                    lastProgress = System.nanoTime();
+                    release(chunk.data());
+                    scheduleRead();
+                }
+            } catch (IOException ex) {
+                abort("client write failed: " + ex.getMessage());
+            }
+        }
+
+        private void inspect(long now) {
+            if (finished) {
+                active.remove(this);
+                return;
+            }
+            if (now - lastProgress > props.getIdleTimeout().toNanos()) {
+                abort("idle for " + props.getIdleTimeout());
+                return;
+            }
+            long elapsed = now - windowStart;
+            if (elapsed < props.getThroughputWindow().toNanos()) {
+                return;
+            }
+            long transferred = bytesWritten - windowStartBytes;
+            double perSecond = transferred / (elapsed / 1_000_000_000d);
+            if (perSecond < props.getMinThroughputBytesPerSecond()) {
+                abort(String.format("throughput %.0f B/s below minimum", perSecond));
+                return;
+            }
+            windowStart = now;
+            windowStartBytes = bytesWritten;
+        }
+
+        private synchronized void finish() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            cleanup();
+            async.complete();
+        }
+
+        private synchronized void abort(String reason) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            log.debug("Aborting media transfer after {} bytes: {}", bytesWritten, reason);
+            cleanup();
+            try {
+                // The response is short of its Content-Length, so the container closes the connection
+                async.complete();
+            } catch (IllegalStateException ignored) {
+            }
+        }
+
+        private void cleanup() {
+            active.remove(this);
+            try {
+                source.close();
+            } catch (IOException ignored) {
+            }
+            Chunk chunk;
+            while ((chunk = filled.poll()) != null) {
+                release(chunk.data());
+            }
+        }
+
+        @Override
+        public void onWritePossible() {
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            abort("client error: " + t.getMessage());
+        }
+
+        @Override
+        public synchronized void onComplete(AsyncEvent event) {
+            if (!finished) {
+                finished = true;
+                cleanup();
+            }
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            abort("async timeout");
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            abort("async error");
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+
+    private record Chunk(byte[] data, int length) {
+    }
+}
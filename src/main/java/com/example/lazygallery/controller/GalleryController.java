@@ -1,5 +1,6 @@
 package com.example.lazygallery.controller;
 
+import com.example.lazygallery.model.GalleryPage;
 import com.example.lazygallery.model.GalleryView;
 import com.example.lazygallery.persistence.document.GalleryDocument;
 import com.example.lazygallery.service.GalleryService;
@@ -16,6 +17,7 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
@@ -37,6 +39,16 @@ public class GalleryController {
         return ResponseEntity.ok(toView(document));
     }
 
+    @GetMapping
+    public ResponseEntity<GalleryPage> listGalleries(
+        @RequestHeader(OWNER_HEADER) String ownerId,
+        @RequestParam(defaultValue = "0") int offset,
+        @RequestParam(defaultValue = "24") int limit
+    ) {
+        String baseUrl = ServletUriComponentsBuilder.fromCurrentContextPath().build().toUriString();
+        return ResponseEntity.ok(galleryService.listGalleries(ownerId, offset, limit, baseUrl));
+    }
+
     @GetMapping("/{galleryId}")
     public ResponseEntity<GalleryView> getGallery(
         @PathVariable String galleryId,
@@ -1,12 +1,26 @@
 package com.example.lazygallery.controller;
 
+import com.example.lazygallery.model.InvalidQueryException;
+import com.example.lazygallery.model.MediaFilter;
 import com.example.lazygallery.model.MediaPage;
+import com.example.lazygallery.model.MediaSort;
 import com.example.lazygallery.persistence.document.MediaAssetDocument;
+import com.example.lazygallery.service.ArchivePendingException;
 import com.example.lazygallery.service.MediaService;
+import com.example.lazygallery.service.SubscriberLimitException;
+import com.example.lazygallery.service.ThumbnailCache.CachedThumbnail;
+import com.example.lazygallery.storage.ObjectStorage.StoredObject;
+import com.example.lazygallery.util.MediaTypes;
 import io.minio.errors.MinioException;
-import io.minio.StatObjectResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -24,11 +38,17 @@ import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 
 @RestController
@@ -39,17 +59,25 @@ public class MediaController {
 
     private static final String OWNER_HEADER = "X-Owner-Id";
     private static final String PASSWORD_HEADER = "X-Gallery-Password";
+    private static final MediaType PREVIEW_BUNDLE = MediaType.parseMediaType("application/vnd.lazygallery.preview-bundle");
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
 
     private final MediaService mediaService;
+    private final AsyncMediaStreamer mediaStreamer;
 
     @GetMapping("/galleries/{galleryId}/media")
     public MediaPage listOwnerMedia(
         @PathVariable String galleryId,
         @RequestHeader(OWNER_HEADER) String ownerId,
         @RequestParam(defaultValue = "0") int offset,
-        @RequestParam(defaultValue = "50") int limit
+        @RequestParam(defaultValue = "50") int limit,
+        MediaQuery query,
+        WebRequest webRequest
     ) {
-        return mediaService.listMediaForOwner(galleryId, ownerId, offset, limit);
+        return mediaService.listMediaForOwner(galleryId, ownerId, query.toFilter(), offset, limit, webRequest::checkNotModified);
     }
 
     @GetMapping("/shared/{shareSlug}/media")
@@ -57,9 +85,27 @@ public class MediaController {
         @PathVariable String shareSlug,
         @RequestHeader(PASSWORD_HEADER) String password,
         @RequestParam(defaultValue = "0") int offset,
-        @RequestParam(defaultValue = "50") int limit
+        @RequestParam(defaultValue = "50") int limit,
+        MediaQuery query,
+        WebRequest webRequest
     ) {
-        return mediaService.listSharedMedia(shareSlug, password, offset, limit);
+        return mediaService.listSharedMedia(shareSlug, password, query.toFilter(), offset, limit, webRequest::checkNotModified);
+    }
+
+    @GetMapping(path = "/galleries/{galleryId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter ownerEvents(
+        @PathVariable String galleryId,
+        @RequestHeader(OWNER_HEADER) String ownerId
+    ) {
+        return mediaService.subscribeForOwner(galleryId, ownerId);
+    }
+
+    @GetMapping(path = "/shared/{shareSlug}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter sharedEvents(
+        @PathVariable String shareSlug,
+        @RequestHeader(PASSWORD_HEADER) String password
+    ) {
+        return mediaService.subscribeShared(shareSlug, password);
     }
 
     @PostMapping(path = "/galleries/{galleryId}/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
@@ -113,50 +159,90 @@ public class MediaController {
     }
 
     @GetMapping("/galleries/{galleryId}/files/original/{id}")
-    public ResponseEntity<InputStreamResource> getOwnerOriginal(
+    public void getOwnerOriginal(
         @PathVariable String galleryId,
         @PathVariable String id,
-        @RequestHeader(OWNER_HEADER) String ownerId
+        @RequestHeader(OWNER_HEADER) String ownerId,
+        HttpServletRequest request,
+        HttpServletResponse response
     ) throws Exception {
-        StatObjectResponse stat = mediaService.statOriginalForOwner(galleryId, ownerId, id);
-        InputStream stream = mediaService.openOriginalForOwner(galleryId, ownerId, id);
-        return buildStreamResponse(stat, stream);
+        StoredObject stat = mediaService.statOriginalForOwner(galleryId, ownerId, id);
+        if (!sendLocalOriginal(stat, request, response)) {
+            streamOriginal(stat, mediaService.openOriginalForOwner(galleryId, ownerId, id), request, response);
+        }
     }
 
     @GetMapping("/galleries/{galleryId}/files/preview/{id}")
-    public ResponseEntity<InputStreamResource> getOwnerPreview(
+    public ResponseEntity<Resource> getOwnerPreview(
         @PathVariable String galleryId,
         @PathVariable String id,
-        @RequestHeader(OWNER_HEADER) String ownerId
+        @RequestHeader(OWNER_HEADER) String ownerId,
+        HttpServletRequest request
     ) throws Exception {
-        StatObjectResponse stat = mediaService.statThumbnailForOwner(galleryId, ownerId, id);
-        InputStream stream = mediaService.openThumbnailForOwner(galleryId, ownerId, id);
-        return buildPreviewResponse(stat, stream);
+        return buildPreviewResponse(mediaService.thumbnailForOwner(galleryId, ownerId, id), request);
+    }
+
+    @PostMapping("/galleries/{galleryId}/files/previews")
+    public ResponseEntity<StreamingResponseBody> getOwnerPreviewBundle(
+        @PathVariable String galleryId,
+        @RequestHeader(OWNER_HEADER) String ownerId,
+        @RequestBody PreviewBundleRequest request
+    ) {
+        return buildPreviewBundleResponse(mediaService.thumbnailsForOwner(galleryId, ownerId, request.ids()));
     }
 
     @GetMapping("/shared/{shareSlug}/files/original/{id}")
-    public ResponseEntity<InputStreamResource> getSharedOriginal(
+    public void getSharedOriginal(
         @PathVariable String shareSlug,
         @PathVariable String id,
-        @RequestHeader(PASSWORD_HEADER) String password
+        @RequestHeader(PASSWORD_HEADER) String password,
+        HttpServletRequest request,
+        HttpServletResponse response
     ) throws Exception {
-        StatObjectResponse stat = mediaService.statOriginalShared(shareSlug, password, id);
-        InputStream stream = mediaService.openOriginalShared(shareSlug, password, id);
-        return buildStreamResponse(stat, stream);
+        StoredObject stat = mediaService.statOriginalShared(shareSlug, password, id);
+        if (!sendLocalOriginal(stat, request, response)) {
+            streamOriginal(stat, mediaService.openOriginalShared(shareSlug, password, id), request, response);
+        }
     }
 
     @GetMapping("/shared/{shareSlug}/files/preview/{id}")
-    public ResponseEntity<InputStreamResource> getSharedPreview(
+    public ResponseEntity<Resource> getSharedPreview(
         @PathVariable String shareSlug,
         @PathVariable String id,
-        @RequestHeader(PASSWORD_HEADER) String password
+        @RequestHeader(PASSWORD_HEADER) String password,
+        HttpServletRequest request
     ) throws Exception {
-        StatObjectResponse stat = mediaService.statThumbnailShared(shareSlug, password, id);
-        InputStream stream = mediaService.openThumbnailShared(shareSlug, password, id);
-        return buildPreviewResponse(stat, stream);
+        return buildPreviewResponse(mediaService.thumbnailShared(shareSlug, password, id), request);
+    }
+
+    @PostMapping("/shared/{shareSlug}/files/previews")
+    public ResponseEntity<StreamingResponseBody> getSharedPreviewBundle(
+        @PathVariable String shareSlug,
+        @RequestHeader(PASSWORD_HEADER) String password,
+        @RequestBody PreviewBundleRequest request
+    ) {
+        return buildPreviewBundleResponse(mediaService.thumbnailsShared(shareSlug, password, request.ids()));
+    }
+
+    private void streamOriginal(StoredObject stat, InputStream stream,
+                                HttpServletRequest request, HttpServletResponse response) throws IOException {
+        writeOriginalHeaders(stat, response);
+        mediaStreamer.stream(request, response, stream);
+    }
+
+    private boolean sendLocalOriginal(StoredObject stat, HttpServletRequest request, HttpServletResponse response) {
+        if (stat.file() == null || !Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            return false;
+        }
+        // Local storage engine: Tomcat transfers the file itself once the handler returns
+        writeOriginalHeaders(stat, response);
+        request.setAttribute(SENDFILE_FILENAME, stat.file().toString());
+        request.setAttribute(SENDFILE_START, 0L);
+        request.setAttribute(SENDFILE_END, stat.size());
+        return true;
     }
 
-    private ResponseEntity<InputStreamResource> buildStreamResponse(StatObjectResponse stat, InputStream stream) {
+    private void writeOriginalHeaders(StoredObject stat, HttpServletResponse response) {
         MediaType mediaType = MediaType.APPLICATION_OCTET_STREAM;
         try {
             if (stat.contentType() != null) {
@@ -164,21 +250,62 @@ public class MediaController {
             }
         } catch (Exception ignored) {
         }
-        return ResponseEntity.ok()
-            .header(HttpHeaders.CACHE_CONTROL, CacheControl.maxAge(Duration.ofHours(1)).cachePublic().getHeaderValue())
-            .header(HttpHeaders.ETAG, stat.etag())
-            .contentType(mediaType)
-            .contentLength(stat.size())
-            .body(new InputStreamResource(stream));
+        response.setStatus(HttpStatus.OK.value());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.maxAge(Duration.ofHours(1)).cachePublic().getHeaderValue());
+        response.setHeader(HttpHeaders.ETAG, stat.etag());
+        response.setContentType(mediaType.toString());
+        response.setContentLengthLong(stat.size());
     }
 
-    private ResponseEntity<InputStreamResource> buildPreviewResponse(StatObjectResponse stat, InputStream stream) {
-        return ResponseEntity.ok()
+    private ResponseEntity<Resource> buildPreviewResponse(CachedThumbnail thumbnail, HttpServletRequest request) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
             .header(HttpHeaders.CACHE_CONTROL, CacheControl.maxAge(Duration.ofHours(1)).cachePublic().getHeaderValue())
-            .header(HttpHeaders.ETAG, stat.etag())
+            .header(HttpHeaders.ETAG, thumbnail.etag())
             .contentType(MediaType.IMAGE_JPEG)
-            .contentLength(stat.size())
-            .body(new InputStreamResource(stream));
+            .contentLength(thumbnail.size());
+        if (thumbnail.bytes() != null) {
+            return builder.body(new ByteArrayResource(thumbnail.bytes()));
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat streams the file itself with FileChannel.transferTo once the handler returns
+            request.setAttribute(SENDFILE_FILENAME, thumbnail.file().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, thumbnail.size());
+            return builder.build();
+        }
+        return builder.body(new FileSystemResource(thumbnail.file()));
+    }
+
+    private ResponseEntity<StreamingResponseBody> buildPreviewBundleResponse(List<MediaService.ThumbnailRef> refs) {
+        return ResponseEntity.ok()
+            .header(HttpHeaders.CACHE_CONTROL, CacheControl.noStore().getHeaderValue())
+            .contentType(PREVIEW_BUNDLE)
+            .body(out -> mediaService.writeThumbnailBundle(refs, out));
+    }
+
+    @GetMapping("/files/original/{token}")
+    public void getSignedOriginal(
+        @PathVariable String token,
+        HttpServletRequest request,
+        HttpServletResponse response
+    ) throws Exception {
+        StoredObject stat = mediaService.statSignedOriginal(token);
+        if (!sendLocalOriginal(stat, request, response)) {
+            streamOriginal(stat, mediaService.openSignedOriginal(token), request, response);
+        }
+    }
+
+    @GetMapping("/files/preview/{token}")
+    public ResponseEntity<Resource> getSignedPreview(
+        @PathVariable String token,
+        HttpServletRequest request
+    ) throws Exception {
+        return buildPreviewResponse(mediaService.thumbnailSigned(token), request);
+    }
+
+    @PostMapping("/files/previews")
+    public ResponseEntity<StreamingResponseBody> getSignedPreviewBundle(@RequestBody PreviewBundleRequest request) {
+        return buildPreviewBundleResponse(mediaService.thumbnailsSigned(request.ids()));
     }
 
     @ExceptionHandler({IllegalArgumentException.class})
@@ -186,6 +313,31 @@ public class MediaController {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ErrorResponse("not_found", ex.getMessage()));
     }
 
+    @ExceptionHandler({InvalidQueryException.class})
+    public ResponseEntity<InvalidQueryResponse> handleInvalidQuery(InvalidQueryException ex) {
+        return ResponseEntity.badRequest()
+            .body(new InvalidQueryResponse("bad_request", ex.getMessage(), ex.getParameter(), ex.getAllowed()));
+    }
+
+    @ExceptionHandler({ArchivePendingException.class})
+    public ResponseEntity<ErrorResponse> handleArchivePending(ArchivePendingException ex) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+            .header(HttpHeaders.RETRY_AFTER, Long.toString(ex.getRetryAfter().toSeconds()))
+            .body(new ErrorResponse("archive_pending", ex.getMessage()));
+    }
+
+    @ExceptionHandler({SubscriberLimitException.class})
+    public ResponseEntity<ErrorResponse> handleSubscriberLimit(SubscriberLimitException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, "30")
+            .body(new ErrorResponse("unavailable", ex.getMessage()));
+    }
+
+    @ExceptionHandler({NoSuchFileException.class})
+    public ResponseEntity<ErrorResponse> handleMissingObject(NoSuchFileException ex) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ErrorResponse("not_found", "Object not found"));
+    }
+
     @ExceptionHandler({MinioException.class})
     public ResponseEntity<ErrorResponse> handleMinio(MinioException ex) {
         return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(new ErrorResponse("storage_error", ex.getMessage()));
@@ -196,6 +348,40 @@ public class MediaController {
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new ErrorResponse("error", ex.getMessage()));
     }
 
+    public record MediaQuery(
+        String type,
+        Long minSize,
+        Long maxSize,
+        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant capturedFrom,
+        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant capturedTo,
+        String sort,
+        String order
+    ) {
+        MediaFilter toFilter() {
+            return MediaFilter.builder()
+                .type(validType(type))
+                .minSize(minSize)
+                .maxSize(maxSize)
+                .capturedFrom(capturedFrom)
+                .capturedTo(capturedTo)
+                .sort(MediaSort.fromParam(sort))
+                .direction("asc".equalsIgnoreCase(order) ? Sort.Direction.ASC : Sort.Direction.DESC)
+                .build();
+        }
+
+        private static String validType(String type) {
+            if (type == null || type.isBlank()) {
+                return null;
+            }
+            if (!MediaTypes.ALL.contains(type)) {
+                throw new InvalidQueryException("type", type, MediaTypes.ALL);
+            }
+            return type;
+        }
+    }
+
+    public record PreviewBundleRequest(List<String> ids) {}
+
     public record UploadResponse(List<String> uploaded) {}
 
     public record ShareRequest(boolean shared) {}
@@ -203,4 +389,6 @@ public class MediaController {
     public record ShareResponse(boolean shared, String shareSlug, String shareLink) {}
 
     public record ErrorResponse(String error, String message) {}
+
+    public record InvalidQueryResponse(String error, String message, String parameter, List<String> allowed) {}
 }
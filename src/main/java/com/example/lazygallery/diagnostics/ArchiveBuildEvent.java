@@ -0,0 +1,34 @@
+package com.example.lazygallery.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("lazygallery.ArchiveBuild")
+@Label("Archive Build")
+@Description("Building or appending a gallery ZIP archive and uploading it")
+@Category({"LazyGallery", "Archive"})
+@StackTrace(false)
+public class ArchiveBuildEvent extends Event {
+
+    @Label("Gallery")
+    public String galleryId;
+
+    @Label("Mode")
+    @Description("full or append")
+    public String mode;
+
+    @Label("Entries Written")
+    public int entries;
+
+    @Label("Archive Size")
+    @DataAmount
+    public long bytes;
+
+    @Label("Outcome")
+    public String outcome;
+}
@@ -0,0 +1,101 @@
+package com.example.lazygallery.diagnostics;
+
+import com.example.lazygallery.config.FlightRecorderProperties;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Keeps a continuous, disk-backed JFR recording bounded by {@code app.flight-recorder.max-age} and
+ * {@code max-size-bytes}, so a latency spike can be examined after the fact by dumping the recent window.
+ * The JDK's own events use the configured settings profile ("default" is the low-overhead one); the
+ * application's high-volume events only record calls slower than {@code slow-threshold}.
+ */
+@Component
+public class FlightRecorderService {
+
+    private static final Logger log = LoggerFactory.getLogger(FlightRecorderService.class);
+    private static final List<Class<? extends Event>> ALWAYS_RECORDED = List.of(
+        UploadEvent.class, ThumbnailEncodeEvent.class, ArchiveBuildEvent.class);
+    private static final List<Class<? extends Event>> SLOW_ONLY = List.of(
+        StorageCallEvent.class, PasswordCheckEvent.class, ListingQueryEvent.class);
+
+    private final FlightRecorderProperties props;
+    private volatile Recording recording;
+
+    public FlightRecorderService(FlightRecorderProperties props) {
+        this.props = props;
+    }
+
+    @EventListener(ApplicationStartedEvent.class)
+    public synchronized void start() {
+        if (!props.isEnabled() || recording != null) {
+            return;
+        }
+        if (!FlightRecorder.isAvailable()) {
+            log.warn("Flight recorder is not available in this JVM, continuous recording disabled");
+            return;
+        }
+        try {
+            Recording continuous = new Recording(Configuration.getConfiguration(props.getSettings()));
+            continuous.setName("lazygallery");
+            continuous.setToDisk(true);
+            continuous.setMaxAge(props.getMaxAge());
+            continuous.setMaxSize(props.getMaxSizeBytes());
+            ALWAYS_RECORDED.forEach(type -> continuous.enable(type).withoutThreshold());
+            SLOW_ONLY.forEach(type -> continuous.enable(type).withThreshold(props.getSlowThreshold()));
+            continuous.start();
+            recording = continuous;
+            log.info("Continuous flight recording started, keeping {} / {} bytes", props.getMaxAge(), props.getMaxSizeBytes());
+        } catch (IOException | ParseException | RuntimeException ex) {
+            log.warn("Failed to start continuous flight recording: {}", ex.getMessage());
+        }
+    }
+
+    public boolean isRecording() {
+        return recording != null;
+    }
+
+    /**
+     * Writes the last {@code window} of recorded data to a new temp file, which the caller must delete.
+     */
+    public Path dump(Duration window) throws IOException {
+        if (recording == null) {
+            throw new IllegalStateException("Flight recording is not running");
+        }
+        // A snapshot freezes the repository chunks, so trimming it does not touch the running recording
+        try (Recording snapshot = FlightRecorder.getFlightRecorder().takeSnapshot()) {
+            snapshot.setMaxAge(window);
+            Path file = Files.createTempFile("lazygallery-", ".jfr");
+            try {
+                snapshot.dump(file);
+            } catch (IOException | RuntimeException ex) {
+                Files.deleteIfExists(file);
+                throw ex;
+            }
+            return file;
+        }
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+}
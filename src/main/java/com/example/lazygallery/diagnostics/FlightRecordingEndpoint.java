@@ -0,0 +1,73 @@
+package com.example.lazygallery.diagnostics;
+
+import com.example.lazygallery.config.FlightRecorderProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * {@code GET /actuator/flightrecording?minutes=N} downloads the last N minutes of the continuous recording
+ * as a {@code .jfr} file for JDK Mission Control or {@code jfr print}.
+ */
+@Component
+@WebEndpoint(id = "flightrecording")
+@RequiredArgsConstructor
+public class FlightRecordingEndpoint {
+
+    private final FlightRecorderService recorder;
+    private final FlightRecorderProperties props;
+
+    @ReadOperation(produces = "application/octet-stream")
+    public WebEndpointResponse<Resource> dump(@Nullable Integer minutes) throws IOException {
+        if (!recorder.isRecording()) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_SERVICE_UNAVAILABLE);
+        }
+        Duration window = Duration.ofMinutes(minutes != null && minutes > 0 ? minutes : props.getDefaultDumpMinutes());
+        if (window.compareTo(props.getMaxAge()) > 0) {
+            window = props.getMaxAge();
+        }
+        return new WebEndpointResponse<>(new TemporaryFileResource(recorder.dump(window)));
+    }
+
+    /**
+     * Deletes the dump once it has been streamed to the client.
+     */
+    private static final class TemporaryFileResource extends FileSystemResource {
+
+        TemporaryFileResource(Path file) {
+            super(file);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return new FilterInputStream(super.getInputStream()) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        Files.deleteIfExists(getFile().toPath());
+                    }
+                }
+            };
+        }
+
+        @Override
+        public boolean isFile() {
+            // Keeps the web layer from serving the file by path, which would bypass the cleanup above
+            return false;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.lazygallery.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("lazygallery.ListingQuery")
+@Label("Listing Query")
+@Description("Mongo queries behind one page of galleries or media")
+@Category({"LazyGallery", "Persistence"})
+@StackTrace(false)
+public class ListingQueryEvent extends Event {
+
+    @Label("Listing")
+    @Description("galleries, media or shared-media")
+    public String listing;
+
+    @Label("Gallery")
+    public String galleryId;
+
+    @Label("Offset")
+    public int offset;
+
+    @Label("Limit")
+    public int limit;
+
+    @Label("Returned")
+    public int returned;
+
+    @Label("Filtered")
+    public boolean filtered;
+}
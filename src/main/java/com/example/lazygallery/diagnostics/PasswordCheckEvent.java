@@ -0,0 +1,22 @@
+package com.example.lazygallery.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("lazygallery.PasswordCheck")
+@Label("Share Password Check")
+@Description("BCrypt verification of a shared gallery password")
+@Category({"LazyGallery", "Security"})
+@StackTrace(false)
+public class PasswordCheckEvent extends Event {
+
+    @Label("Gallery")
+    public String galleryId;
+
+    @Label("Outcome")
+    public String outcome;
+}
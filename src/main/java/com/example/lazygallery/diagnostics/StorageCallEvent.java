@@ -0,0 +1,33 @@
+package com.example.lazygallery.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("lazygallery.StorageCall")
+@Label("Object Storage Call")
+@Description("One request to the object store; for reads the duration ends when the response stream is opened")
+@Category({"LazyGallery", "Storage"})
+@StackTrace(false)
+public class StorageCallEvent extends Event {
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Bucket")
+    public String bucket;
+
+    @Label("Object Key")
+    public String objectKey;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+
+    @Label("Outcome")
+    public String outcome;
+}
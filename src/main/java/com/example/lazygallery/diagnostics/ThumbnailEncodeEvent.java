@@ -0,0 +1,31 @@
+package com.example.lazygallery.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("lazygallery.ThumbnailEncode")
+@Label("Thumbnail Encode")
+@Description("Decoding an original and encoding its JPEG thumbnail, excluding storage calls")
+@Category({"LazyGallery", "Media"})
+@StackTrace(false)
+public class ThumbnailEncodeEvent extends Event {
+
+    @Label("Gallery")
+    public String galleryId;
+
+    @Label("Source Size")
+    @DataAmount
+    public long sourceBytes;
+
+    @Label("Thumbnail Size")
+    @DataAmount
+    public long thumbnailBytes;
+
+    @Label("Outcome")
+    public String outcome;
+}
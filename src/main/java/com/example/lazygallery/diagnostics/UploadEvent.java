@@ -0,0 +1,30 @@
+package com.example.lazygallery.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("lazygallery.Upload")
+@Label("Media Upload")
+@Description("One uploaded file, from reading the request part to saving its document")
+@Category({"LazyGallery", "Media"})
+@StackTrace(false)
+public class UploadEvent extends Event {
+
+    @Label("Gallery")
+    public String galleryId;
+
+    @Label("Content Type")
+    public String contentType;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+
+    @Label("Outcome")
+    public String outcome;
+}
@@ -0,0 +1,23 @@
+package com.example.lazygallery.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class DerivativeJobView {
+
+    String id;
+    String profile;
+    String currentProfile;
+    String status;
+    boolean runningHere;
+    String cursor;
+    long scanned;
+    long regenerated;
+    long failed;
+    String lastError;
+    Long startedAt;
+    Long updatedAt;
+    Long finishedAt;
+}
@@ -0,0 +1,14 @@
+package com.example.lazygallery.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+
+@Value
+@Builder
+public class GalleryPage {
+
+    List<GallerySummary> items;
+    Integer nextOffset;
+}
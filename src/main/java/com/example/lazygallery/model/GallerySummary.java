@@ -0,0 +1,21 @@
+package com.example.lazygallery.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class GallerySummary {
+
+    String id;
+    String name;
+    boolean shared;
+    String shareLink;
+    long itemCount;
+    long totalBytes;
+    long imageCount;
+    long videoCount;
+    Long lastModified;
+    String coverUrl;
+    String coverPlaceholder;
+}
@@ -11,4 +11,9 @@ public class GalleryView {
     String name;
     boolean shared;
     String shareLink;
+    long itemCount;
+    long totalBytes;
+    long imageCount;
+    long videoCount;
+    Long lastModified;
 }
@@ -0,0 +1,27 @@
+package com.example.lazygallery.model;
+
+import java.util.List;
+
+/**
+ * A listing query parameter outside its fixed set of values. Unlike an unknown gallery or file this is the
+ * caller's mistake, so it maps to 400 and carries the values that would have been accepted.
+ */
+public class InvalidQueryException extends RuntimeException {
+
+    private final String parameter;
+    private final List<String> allowed;
+
+    public InvalidQueryException(String parameter, String value, List<String> allowed) {
+        super("Unknown " + parameter + " " + value);
+        this.parameter = parameter;
+        this.allowed = allowed;
+    }
+
+    public String getParameter() {
+        return parameter;
+    }
+
+    public List<String> getAllowed() {
+        return allowed;
+    }
+}
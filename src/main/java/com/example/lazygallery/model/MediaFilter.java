@@ -0,0 +1,30 @@
+package com.example.lazygallery.model;
+
+import lombok.Builder;
+import lombok.Value;
+import org.springframework.data.domain.Sort;
+
+import java.time.Instant;
+
+@Value
+@Builder
+public class MediaFilter {
+
+    String type;
+    Long minSize;
+    Long maxSize;
+    Instant capturedFrom;
+    Instant capturedTo;
+    @Builder.Default
+    MediaSort sort = MediaSort.UPLOADED;
+    @Builder.Default
+    Sort.Direction direction = Sort.Direction.DESC;
+
+    public boolean isUnfiltered() {
+        return type == null && minSize == null && maxSize == null && capturedFrom == null && capturedTo == null;
+    }
+
+    public static MediaFilter none() {
+        return MediaFilter.builder().build();
+    }
+}
@@ -14,6 +14,11 @@ public class MediaItem {
     String mime;
     long size;
     long mtime;
+    Integer width;
+    Integer height;
+    Integer orientation;
+    Long capturedAt;
+    String placeholder;
     boolean shared;
     String shareLink;
     String originalUrl;
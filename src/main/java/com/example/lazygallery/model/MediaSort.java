@@ -0,0 +1,33 @@
+package com.example.lazygallery.model;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+public enum MediaSort {
+
+    UPLOADED("uploadedAt"),
+    CAPTURED("capturedAt"),
+    SIZE("size");
+
+    private final String field;
+
+    MediaSort(String field) {
+        this.field = field;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public static MediaSort fromParam(String value) {
+        if (value == null || value.isBlank()) {
+            return UPLOADED;
+        }
+        return Arrays.stream(values())
+            .filter(sort -> sort.name().equals(value.toUpperCase(Locale.ROOT)))
+            .findFirst()
+            .orElseThrow(() -> new InvalidQueryException("sort", value, Arrays.stream(values())
+                .map(sort -> sort.name().toLowerCase(Locale.ROOT))
+                .toList()));
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.lazygallery.persistence.document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "archives")
+@CompoundIndex(name = "gallery_created", def = "{'galleryId': 1, 'createdAt': -1}")
+public class ArchiveDocument {
+
+    @Id
+    private String id;
+
+    private String galleryId;
+
+    @Indexed(unique = true)
+    private String objectKey;
+
+    private String signature;
+    private long size;
+    private long centralDirectoryOffset;
+    private Instant createdAt;
+
+    @Indexed
+    private Instant lastAccessedAt;
+}
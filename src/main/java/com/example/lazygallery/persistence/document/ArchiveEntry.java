@@ -0,0 +1,34 @@
+package com.example.lazygallery.persistence.document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * One file inside a stored archive. Kept in its own collection rather than embedded in
+ * {@link ArchiveDocument}, so downloads never load the entry list and large galleries stay clear of the
+ * document size limit; only appends read it.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "archiveEntries")
+@CompoundIndex(name = "archive_offset", def = "{'archiveId': 1, 'offset': 1}")
+public class ArchiveEntry {
+
+    @Id
+    private String id;
+
+    private String archiveId;
+    private String assetId;
+    private String name;
+    private long crc;
+    private long size;
+    private long offset;
+    private long dosTime;
+}
@@ -0,0 +1,27 @@
+package com.example.lazygallery.persistence.document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "archiveLeases")
+public class ArchiveLeaseDocument {
+
+    @Id
+    private String id;
+
+    private String owner;
+
+    @Indexed(expireAfterSeconds = 0)
+    private Instant expiresAt;
+}
@@ -0,0 +1,50 @@
+package com.example.lazygallery.persistence.document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "derivativeJobs")
+public class DerivativeJobDocument {
+
+    @Id
+    private String id;
+
+    // Optimistic locking keeps two nodes from claiming the same job
+    @Version
+    private Long version;
+
+    private String profile;
+    private Status status;
+    private String nodeId;
+
+    // Last mediaAssets _id that has been processed; the scan resumes strictly after it
+    private String cursor;
+    private long scanned;
+    private long regenerated;
+    private long failed;
+    private String lastError;
+
+    @Indexed
+    private Instant startedAt;
+    private Instant updatedAt;
+    private Instant finishedAt;
+
+    public enum Status {
+        RUNNING,
+        PAUSED,
+        COMPLETED,
+        FAILED
+    }
+}
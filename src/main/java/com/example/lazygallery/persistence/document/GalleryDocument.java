@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
@@ -15,6 +17,11 @@ import java.time.Instant;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "galleries")
+@CompoundIndexes({
+    @CompoundIndex(name = "owner_created", def = "{'ownerId': 1, 'createdAt': -1, '_id': -1}"),
+    // Serves the share lookup filter's periodic refresh of recently changed shared galleries
+    @CompoundIndex(name = "shared_updated", def = "{'shared': 1, 'updatedAt': 1}")
+})
 public class GalleryDocument {
 
     @Id
@@ -31,4 +38,5 @@ public class GalleryDocument {
     private boolean shared;
     private Instant createdAt;
     private Instant updatedAt;
+    private GalleryStats stats;
 }
@@ -0,0 +1,31 @@
+package com.example.lazygallery.persistence.document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GalleryStats {
+
+    private long itemCount;
+    private long totalBytes;
+    private long imageCount;
+    private long videoCount;
+    private long otherCount;
+    private long sharedCount;
+    private Instant lastModifiedAt;
+    // Media writes that have begun but not yet applied their counter update, see GalleryStatsReconciler
+    private long pendingMutations;
+    private Instant pendingSince;
+    private long version;
+
+    public static GalleryStats empty(Instant now) {
+        return GalleryStats.builder().lastModifiedAt(now).build();
+    }
+}
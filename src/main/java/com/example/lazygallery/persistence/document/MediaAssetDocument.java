@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
@@ -15,6 +17,17 @@ import java.time.Instant;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "mediaAssets")
+@CompoundIndexes({
+    @CompoundIndex(name = "gallery_uploaded", def = "{'galleryId': 1, 'uploadedAt': -1, '_id': -1}"),
+    @CompoundIndex(name = "gallery_captured", def = "{'galleryId': 1, 'capturedAt': -1, '_id': -1}"),
+    @CompoundIndex(name = "gallery_size", def = "{'galleryId': 1, 'size': -1, '_id': -1}"),
+    @CompoundIndex(name = "gallery_type_uploaded", def = "{'galleryId': 1, 'type': 1, 'uploadedAt': -1, '_id': -1, 'size': 1}"),
+    @CompoundIndex(name = "gallery_type_captured", def = "{'galleryId': 1, 'type': 1, 'capturedAt': -1, '_id': -1, 'size': 1}"),
+    @CompoundIndex(name = "gallery_type_size", def = "{'galleryId': 1, 'type': 1, 'size': -1, '_id': -1}"),
+    @CompoundIndex(name = "gallery_shared_uploaded", def = "{'galleryId': 1, 'shared': 1, 'uploadedAt': -1, '_id': -1}"),
+    @CompoundIndex(name = "gallery_shared_captured", def = "{'galleryId': 1, 'shared': 1, 'capturedAt': -1, '_id': -1}"),
+    @CompoundIndex(name = "gallery_shared_size", def = "{'galleryId': 1, 'shared': 1, 'size': -1, '_id': -1}")
+})
 public class MediaAssetDocument {
 
     @Id
@@ -30,10 +43,20 @@ public class MediaAssetDocument {
     private String storageName;
     private String originalName;
     private String mimeType;
+    private String type;
     private long size;
     private Instant uploadedAt;
+    private Integer width;
+    private Integer height;
+    private Integer orientation;
+    private Instant capturedAt;
+    private String placeholder;
+    private String thumbnailProfile;
     private boolean shared;
 
+    @Indexed(sparse = true)
+    private Instant sharedAt;
+
     @Indexed(unique = true, sparse = true)
     private String shareSlug;
 }
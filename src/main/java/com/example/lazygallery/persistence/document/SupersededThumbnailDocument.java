@@ -0,0 +1,32 @@
+package com.example.lazygallery.persistence.document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * A thumbnail replaced by a newer derivative. Signed links to it may still be in use, so it is only
+ * deleted once {@code deleteAfter} has passed.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "supersededThumbnails")
+public class SupersededThumbnailDocument {
+
+    @Id
+    private String id;
+
+    @Indexed
+    private String objectKey;
+
+    @Indexed
+    private Instant deleteAfter;
+}
@@ -0,0 +1,13 @@
+package com.example.lazygallery.persistence.repository;
+
+import com.example.lazygallery.persistence.document.ArchiveEntry;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.List;
+
+public interface ArchiveEntryRepository extends MongoRepository<ArchiveEntry, String> {
+
+    List<ArchiveEntry> findByArchiveIdOrderByOffsetAsc(String archiveId);
+
+    void deleteByArchiveId(String archiveId);
+}
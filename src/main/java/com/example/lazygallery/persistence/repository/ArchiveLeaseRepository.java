@@ -0,0 +1,7 @@
+package com.example.lazygallery.persistence.repository;
+
+import com.example.lazygallery.persistence.document.ArchiveLeaseDocument;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface ArchiveLeaseRepository extends MongoRepository<ArchiveLeaseDocument, String>, ArchiveLeaseRepositoryCustom {
+}
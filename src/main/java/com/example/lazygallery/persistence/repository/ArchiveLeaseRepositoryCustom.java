@@ -0,0 +1,12 @@
+package com.example.lazygallery.persistence.repository;
+
+import java.time.Duration;
+
+public interface ArchiveLeaseRepositoryCustom {
+
+    boolean tryAcquire(String key, String owner, Duration ttl);
+
+    boolean renew(String key, String owner, Duration ttl);
+
+    void release(String key, String owner);
+}
@@ -0,0 +1,47 @@
+package com.example.lazygallery.persistence.repository;
+
+import com.example.lazygallery.persistence.document.ArchiveLeaseDocument;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.time.Instant;
+
+@RequiredArgsConstructor
+public class ArchiveLeaseRepositoryImpl implements ArchiveLeaseRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public boolean tryAcquire(String key, String owner, Duration ttl) {
+        Instant now = Instant.now();
+        // Matches only a free, expired or already owned lease; otherwise the upsert collides on _id
+        Query query = new Query(Criteria.where("id").is(key)
+            .orOperator(Criteria.where("expiresAt").lt(now), Criteria.where("owner").is(owner)));
+        Update update = new Update()
+            .set("owner", owner)
+            .set("expiresAt", now.plus(ttl));
+        try {
+            mongoTemplate.upsert(query, update, ArchiveLeaseDocument.class);
+            return true;
+        } catch (DuplicateKeyException ex) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean renew(String key, String owner, Duration ttl) {
+        Query query = new Query(Criteria.where("id").is(key).and("owner").is(owner));
+        Update update = Update.update("expiresAt", Instant.now().plus(ttl));
+        return mongoTemplate.updateFirst(query, update, ArchiveLeaseDocument.class).getMatchedCount() > 0;
+    }
+
+    @Override
+    public void release(String key, String owner) {
+        mongoTemplate.remove(new Query(Criteria.where("id").is(key).and("owner").is(owner)), ArchiveLeaseDocument.class);
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.lazygallery.persistence.repository;
+
+import com.example.lazygallery.persistence.document.ArchiveDocument;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.Optional;
+
+public interface ArchiveRepository extends MongoRepository<ArchiveDocument, String>, ArchiveRepositoryCustom {
+
+    Optional<ArchiveDocument> findByObjectKey(String objectKey);
+
+    boolean existsByObjectKey(String objectKey);
+
+    Optional<ArchiveDocument> findFirstByGalleryIdOrderByCreatedAtDesc(String galleryId);
+}
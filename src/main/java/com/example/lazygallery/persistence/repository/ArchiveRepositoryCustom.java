@@ -0,0 +1,15 @@
+package com.example.lazygallery.persistence.repository;
+
+import com.example.lazygallery.persistence.document.ArchiveDocument;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface ArchiveRepositoryCustom {
+
+    boolean recordAccess(String id, Instant accessedAt, Instant staleBefore);
+
+    List<ArchiveDocument> findSummaries();
+
+    List<String> findGalleryIdsAccessedSince(Instant since);
+}
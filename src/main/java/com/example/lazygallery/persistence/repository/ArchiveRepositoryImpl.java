@@ -0,0 +1,41 @@
+package com.example.lazygallery.persistence.repository;
+
+import com.example.lazygallery.persistence.document.ArchiveDocument;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class ArchiveRepositoryImpl implements ArchiveRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public boolean recordAccess(String id, Instant accessedAt, Instant staleBefore) {
+        // Only writes when the stored timestamp is older than staleBefore, so hot archives cost one write per interval
+        Query query = new Query(Criteria.where("id").is(id)
+            .orOperator(Criteria.where("lastAccessedAt").exists(false), Criteria.where("lastAccessedAt").lt(staleBefore)));
+        return mongoTemplate.updateFirst(query, Update.update("lastAccessedAt", accessedAt), ArchiveDocument.class).getModifiedCount() > 0;
+    }
+
+    @Override
+    public List<ArchiveDocument> findSummaries() {
+        Query query = new Query()
+            .with(Sort.by(Sort.Order.asc("galleryId"), Sort.Order.desc("createdAt")));
+        // Archives written before entries moved to their own collection may still embed them
+        query.fields().exclude("entries");
+        return mongoTemplate.find(query, ArchiveDocument.class);
+    }
+
+    @Override
+    public List<String> findGalleryIdsAccessedSince(Instant since) {
+        Query query = new Query(Criteria.where("lastAccessedAt").gte(since));
+        return mongoTemplate.findDistinct(query, "galleryId", ArchiveDocument.class, String.class);
+    }
+}
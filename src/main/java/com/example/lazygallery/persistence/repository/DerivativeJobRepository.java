@@ -0,0 +1,11 @@
+package com.example.lazygallery.persistence.repository;
+
+import com.example.lazygallery.persistence.document.DerivativeJobDocument;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.Optional;
+
+public interface DerivativeJobRepository extends MongoRepository<DerivativeJobDocument, String> {
+
+    Optional<DerivativeJobDocument> findFirstByOrderByStartedAtDesc();
+}
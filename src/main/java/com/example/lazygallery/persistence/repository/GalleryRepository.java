@@ -1,11 +1,15 @@
 package com.example.lazygallery.persistence.repository;
 
 import com.example.lazygallery.persistence.document.GalleryDocument;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
+import java.util.List;
 import java.util.Optional;
 
-public interface GalleryRepository extends MongoRepository<GalleryDocument, String> {
+public interface GalleryRepository extends MongoRepository<GalleryDocument, String>, GalleryRepositoryCustom {
 
     Optional<GalleryDocument> findByShareSlug(String shareSlug);
+
+    List<GalleryDocument> findByOwnerId(String ownerId, Pageable pageable);
 }
@@ -0,0 +1,43 @@
+package com.example.lazygallery.persistence.repository;
+
+import com.example.lazygallery.persistence.document.GalleryDocument;
+import com.example.lazygallery.persistence.document.GalleryStats;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+public interface GalleryRepositoryCustom {
+
+    /**
+     * Marks a media write as in flight, before the asset itself changes. The matching record* call (or
+     * {@link #cancelMutation}) closes it again together with the counter update.
+     */
+    void beginMutation(String galleryId);
+
+    void cancelMutation(String galleryId);
+
+    void recordAdded(String galleryId, String type, long bytes);
+
+    void recordRemoved(String galleryId, String type, long bytes, boolean shared);
+
+    void recordSharedChange(String galleryId, int delta);
+
+    void recordChanged(String galleryId);
+
+    /**
+     * Replaces the statistics only if they still equal {@code expected}, pending mutations and version included;
+     * false when a concurrent update won.
+     */
+    boolean replaceStats(String galleryId, GalleryStats expected, GalleryStats stats);
+
+    Optional<GalleryDocument> findStatsById(String galleryId);
+
+    void forEachStats(Consumer<GalleryDocument> action);
+
+    Optional<GalleryDocument> updateSharing(String galleryId, boolean shared, String shareSlug);
+
+    long countShared();
+
+    void forEachSharedSlug(Instant changedSince, Consumer<String> action);
+}
@@ -0,0 +1,148 @@
+package com.example.lazygallery.persistence.repository;
+
+import com.example.lazygallery.persistence.document.GalleryDocument;
+import com.example.lazygallery.persistence.document.GalleryStats;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+@RequiredArgsConstructor
+public class GalleryRepositoryImpl implements GalleryRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void beginMutation(String galleryId) {
+        Update update = new Update()
+            .inc("stats.pendingMutations", 1)
+            .inc("stats.version", 1)
+            .set("stats.pendingSince", Instant.now());
+        mongoTemplate.updateFirst(byId(galleryId), update, GalleryDocument.class);
+    }
+
+    @Override
+    public void cancelMutation(String galleryId) {
+        mongoTemplate.updateFirst(byId(galleryId), new Update().inc("stats.pendingMutations", -1), GalleryDocument.class);
+    }
+
+    @Override
+    public void recordAdded(String galleryId, String type, long bytes) {
+        Update update = new Update()
+            .inc("stats.pendingMutations", -1)
+            .inc("stats.itemCount", 1)
+            .inc("stats.totalBytes", bytes)
+            .inc("stats." + type + "Count", 1)
+            .set("stats.lastModifiedAt", Instant.now());
+        mongoTemplate.updateFirst(byId(galleryId), update, GalleryDocument.class);
+    }
+
+    @Override
+    public void recordRemoved(String galleryId, String type, long bytes, boolean shared) {
+        Update update = new Update()
+            .inc("stats.pendingMutations", -1)
+            .inc("stats.itemCount", -1)
+            .inc("stats.totalBytes", -bytes)
+            .inc("stats." + type + "Count", -1)
+            .set("stats.lastModifiedAt", Instant.now());
+        if (shared) {
+            update.inc("stats.sharedCount", -1);
+        }
+        mongoTemplate.updateFirst(byId(galleryId), update, GalleryDocument.class);
+    }
+
+    @Override
+    public void recordSharedChange(String galleryId, int delta) {
+        Update update = new Update()
+            .inc("stats.pendingMutations", -1)
+            .inc("stats.sharedCount", delta)
+            .set("stats.lastModifiedAt", Instant.now());
+        mongoTemplate.updateFirst(byId(galleryId), update, GalleryDocument.class);
+    }
+
+    @Override
+    public void recordChanged(String galleryId) {
+        mongoTemplate.updateFirst(byId(galleryId), Update.update("stats.lastModifiedAt", Instant.now()), GalleryDocument.class);
+    }
+
+    @Override
+    public boolean replaceStats(String galleryId, GalleryStats expected, GalleryStats stats) {
+        Criteria criteria = Criteria.where("id").is(galleryId);
+        if (expected == null) {
+            criteria = criteria.and("stats").is(null);
+        } else {
+            criteria = matchCount(criteria, "stats.itemCount", expected.getItemCount());
+            criteria = matchCount(criteria, "stats.totalBytes", expected.getTotalBytes());
+            criteria = matchCount(criteria, "stats.imageCount", expected.getImageCount());
+            criteria = matchCount(criteria, "stats.videoCount", expected.getVideoCount());
+            criteria = matchCount(criteria, "stats.otherCount", expected.getOtherCount());
+            criteria = matchCount(criteria, "stats.sharedCount", expected.getSharedCount());
+            criteria = matchCount(criteria, "stats.pendingMutations", expected.getPendingMutations());
+            criteria = matchCount(criteria, "stats.version", expected.getVersion());
+            criteria = criteria.and("stats.lastModifiedAt").is(expected.getLastModifiedAt());
+            criteria = criteria.and("stats.pendingSince").is(expected.getPendingSince());
+        }
+        return mongoTemplate.updateFirst(new Query(criteria), Update.update("stats", stats), GalleryDocument.class)
+            .getModifiedCount() > 0;
+    }
+
+    @Override
+    public Optional<GalleryDocument> findStatsById(String galleryId) {
+        Query query = byId(galleryId);
+        query.fields().include("stats");
+        return Optional.ofNullable(mongoTemplate.findOne(query, GalleryDocument.class));
+    }
+
+    @Override
+    public void forEachStats(Consumer<GalleryDocument> action) {
+        Query query = new Query();
+        query.fields().include("stats");
+        try (Stream<GalleryDocument> stream = mongoTemplate.stream(query, GalleryDocument.class)) {
+            stream.forEach(action);
+        }
+    }
+
+    @Override
+    public Optional<GalleryDocument> updateSharing(String galleryId, boolean shared, String shareSlug) {
+        Update update = new Update()
+            .set("shared", shared)
+            .set("shareSlug", shareSlug)
+            .set("updatedAt", Instant.now());
+        return Optional.ofNullable(mongoTemplate.findAndModify(byId(galleryId), update,
+            FindAndModifyOptions.options().returnNew(true), GalleryDocument.class));
+    }
+
+    @Override
+    public long countShared() {
+        return mongoTemplate.count(new Query(Criteria.where("shared").is(true)), GalleryDocument.class);
+    }
+
+    @Override
+    public void forEachSharedSlug(Instant changedSince, Consumer<String> action) {
+        Criteria criteria = Criteria.where("shared").is(true).and("shareSlug").ne(null);
+        if (changedSince != null) {
+            criteria = criteria.and("updatedAt").gte(changedSince);
+        }
+        Query query = new Query(criteria);
+        query.fields().include("shareSlug");
+        try (Stream<GalleryDocument> stream = mongoTemplate.stream(query, GalleryDocument.class)) {
+            stream.forEach(gallery -> action.accept(gallery.getShareSlug()));
+        }
+    }
+
+    // Counters only appear once first incremented, so a zero must also match a missing field
+    private Criteria matchCount(Criteria criteria, String field, long value) {
+        return value == 0 ? criteria.and(field).in(0, null) : criteria.and(field).is(value);
+    }
+
+    private Query byId(String galleryId) {
+        return new Query(Criteria.where("id").is(galleryId));
+    }
+}
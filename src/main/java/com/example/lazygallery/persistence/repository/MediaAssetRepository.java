@@ -6,7 +6,7 @@ import org.springframework.data.mongodb.repository.MongoRepository;
 import java.util.List;
 import java.util.Optional;
 
-public interface MediaAssetRepository extends MongoRepository<MediaAssetDocument, String> {
+public interface MediaAssetRepository extends MongoRepository<MediaAssetDocument, String>, MediaAssetRepositoryCustom {
 
     List<MediaAssetDocument> findByGalleryIdOrderByUploadedAtDesc(String galleryId);
 
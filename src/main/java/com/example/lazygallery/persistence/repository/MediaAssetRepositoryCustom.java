@@ -0,0 +1,35 @@
+package com.example.lazygallery.persistence.repository;
+
+import com.example.lazygallery.model.MediaFilter;
+import com.example.lazygallery.persistence.document.MediaAssetDocument;
+import org.springframework.data.domain.Pageable;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+public interface MediaAssetRepositoryCustom {
+
+    List<MediaAssetDocument> search(String galleryId, boolean sharedOnly, MediaFilter filter, Pageable pageable);
+
+    long countMatching(String galleryId, boolean sharedOnly, MediaFilter filter);
+
+    Optional<GalleryTotals> aggregateGalleryTotals(String galleryId);
+
+    List<MediaAssetDocument> findLatestImages(Collection<String> galleryIds);
+
+    long assignMissingTypes();
+
+    List<MediaAssetDocument> findOutdatedThumbnails(String afterId, String profile, int limit);
+
+    boolean updateThumbnailProfile(String id, String profile);
+
+    long countShared();
+
+    void forEachSharedId(Instant sharedSince, Consumer<String> action);
+
+    record GalleryTotals(String id, long itemCount, long totalBytes, long imageCount, long videoCount, long otherCount, long sharedCount) {
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.lazygallery.persistence.repository;
+
+import com.example.lazygallery.model.MediaFilter;
+import com.example.lazygallery.persistence.document.MediaAssetDocument;
+import com.example.lazygallery.util.MediaTypes;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+@RequiredArgsConstructor
+public class MediaAssetRepositoryImpl implements MediaAssetRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public List<MediaAssetDocument> search(String galleryId, boolean sharedOnly, MediaFilter filter, Pageable pageable) {
+        return mongoTemplate.find(new Query(toCriteria(galleryId, sharedOnly, filter)).with(pageable), MediaAssetDocument.class);
+    }
+
+    @Override
+    public long countMatching(String galleryId, boolean sharedOnly, MediaFilter filter) {
+        return mongoTemplate.count(new Query(toCriteria(galleryId, sharedOnly, filter)), MediaAssetDocument.class);
+    }
+
+    @Override
+    public Optional<GalleryTotals> aggregateGalleryTotals(String galleryId) {
+        Aggregation aggregation = Aggregation.newAggregation(
+            Aggregation.match(Criteria.where("galleryId").is(galleryId)),
+            Aggregation.group("galleryId")
+                .count().as("itemCount")
+                .sum("size").as("totalBytes")
+                .sum(countWhen("type", MediaTypes.IMAGE)).as("imageCount")
+                .sum(countWhen("type", MediaTypes.VIDEO)).as("videoCount")
+                .sum(countWhen("type", MediaTypes.OTHER)).as("otherCount")
+                .sum(countWhen("shared", true)).as("sharedCount")
+        );
+        return Optional.ofNullable(mongoTemplate.aggregate(aggregation, MediaAssetDocument.class, GalleryTotals.class).getUniqueMappedResult());
+    }
+
+    @Override
+    public List<MediaAssetDocument> findLatestImages(Collection<String> galleryIds) {
+        if (galleryIds.isEmpty()) {
+            return List.of();
+        }
+        Aggregation aggregation = Aggregation.newAggregation(
+            Aggregation.match(Criteria.where("galleryId").in(galleryIds).and("type").is(MediaTypes.IMAGE)),
+            Aggregation.sort(Sort.by(Sort.Order.asc("galleryId"), Sort.Order.asc("type"), Sort.Order.desc("uploadedAt"))),
+            Aggregation.group("galleryId").first(Aggregation.ROOT).as("cover"),
+            Aggregation.replaceRoot("cover")
+        );
+        return mongoTemplate.aggregate(aggregation, MediaAssetDocument.class, MediaAssetDocument.class).getMappedResults();
+    }
+
+    private ConditionalOperators.Cond countWhen(String field, Object value) {
+        return ConditionalOperators.when(ComparisonOperators.valueOf(field).equalToValue(value)).then(1).otherwise(0);
+    }
+
+    private Criteria toCriteria(String galleryId, boolean sharedOnly, MediaFilter filter) {
+        Criteria criteria = Criteria.where("galleryId").is(galleryId);
+        if (filter.getType() != null) {
+            criteria.and("type").is(filter.getType());
+        }
+        if (sharedOnly) {
+            criteria.and("shared").is(true);
+        }
+        if (filter.getMinSize() != null || filter.getMaxSize() != null) {
+            Criteria size = criteria.and("size");
+            if (filter.getMinSize() != null) {
+                size.gte(filter.getMinSize());
+            }
+            if (filter.getMaxSize() != null) {
+                size.lte(filter.getMaxSize());
+            }
+        }
+        if (filter.getCapturedFrom() != null || filter.getCapturedTo() != null) {
+            Criteria captured = criteria.and("capturedAt");
+            if (filter.getCapturedFrom() != null) {
+                captured.gte(filter.getCapturedFrom());
+            }
+            if (filter.getCapturedTo() != null) {
+                captured.lte(filter.getCapturedTo());
+            }
+        }
+
+        return criteria;
+    }
+
+    @Override
+    public long assignMissingTypes() {
+        long updated = 0;
+        updated += assignType(Criteria.where("type").exists(false).and("mimeType").regex("^image/"), MediaTypes.IMAGE);
+        updated += assignType(Criteria.where("type").exists(false).and("mimeType").regex("^video/"), MediaTypes.VIDEO);
+        updated += assignType(Criteria.where("type").exists(false), MediaTypes.OTHER);
+        return updated;
+    }
+
+    @Override
+    public List<MediaAssetDocument> findOutdatedThumbnails(String afterId, String profile, int limit) {
+        // Walks the _id index so each batch is a bounded range scan regardless of library size
+        Criteria criteria = Criteria.where("type").is(MediaTypes.IMAGE).and("thumbnailProfile").ne(profile);
+        if (afterId != null) {
+            criteria = criteria.and("_id").gt(afterId);
+        }
+        Query query = new Query(criteria).with(Sort.by(Sort.Direction.ASC, "_id")).limit(limit);
+        return mongoTemplate.find(query, MediaAssetDocument.class);
+    }
+
+    @Override
+    public boolean updateThumbnailProfile(String id, String profile) {
+        Query query = new Query(Criteria.where("_id").is(id));
+        return mongoTemplate.updateFirst(query, Update.update("thumbnailProfile", profile), MediaAssetDocument.class).getMatchedCount() > 0;
+    }
+
+    @Override
+    public long countShared() {
+        return mongoTemplate.count(new Query(Criteria.where("shared").is(true)), MediaAssetDocument.class);
+    }
+
+    @Override
+    public void forEachSharedId(Instant sharedSince, Consumer<String> action) {
+        Criteria criteria = Criteria.where("shared").is(true);
+        if (sharedSince != null) {
+            criteria = criteria.and("sharedAt").gte(sharedSince);
+        }
+        Query query = new Query(criteria);
+        query.fields().include("_id");
+        try (Stream<MediaAssetDocument> stream = mongoTemplate.stream(query, MediaAssetDocument.class)) {
+            stream.forEach(asset -> action.accept(asset.getId()));
+        }
+    }
+
+    private long assignType(Criteria criteria, String type) {
+        Query query = new Query(criteria);
+        return mongoTemplate.updateMulti(query, Update.update("type", type), MediaAssetDocument.class).getModifiedCount();
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.lazygallery.persistence.repository;
+
+import com.example.lazygallery.persistence.document.SupersededThumbnailDocument;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface SupersededThumbnailRepository extends MongoRepository<SupersededThumbnailDocument, String> {
+
+    List<SupersededThumbnailDocument> findByDeleteAfterBefore(Instant cutoff, Pageable pageable);
+
+    void deleteByObjectKey(String objectKey);
+}
@@ -0,0 +1,139 @@
+package com.example.lazygallery.service;
+
+import com.example.lazygallery.config.AdmissionProperties;
+import com.example.lazygallery.util.TokenBucket;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Admission control in front of the media endpoints. Every traffic class has its own concurrency pool, so a
+ * burst of archive downloads cannot take the slots listings need, plus a per-client token bucket. Bulk classes
+ * additionally step aside while the interactive pool is busy. Anything that cannot be admitted promptly is
+ * rejected with a retry hint instead of queueing.
+ */
+@Component
+public class AdmissionControl {
+
+    public enum TrafficClass {
+        INTERACTIVE(false), ORIGINAL(false), UPLOAD(true), ARCHIVE(true), EVENTS(false);
+
+        private final boolean bulk;
+
+        TrafficClass(boolean bulk) {
+            this.bulk = bulk;
+        }
+
+        public boolean isBulk() {
+            return bulk;
+        }
+    }
+
+    private final AdmissionProperties props;
+    private final MeterRegistry registry;
+    private final Map<TrafficClass, Semaphore> pools = new EnumMap<>(TrafficClass.class);
+    private final Cache<String, TokenBucket> buckets;
+
+    public AdmissionControl(AdmissionProperties props, MeterRegistry registry) {
+        this.props = props;
+        this.registry = registry;
+        for (TrafficClass trafficClass : TrafficClass.values()) {
+            int limit = lane(trafficClass).getMaxConcurrent();
+            if (limit > 0) {
+                Semaphore pool = new Semaphore(limit, true);
+                pools.put(trafficClass, pool);
+                Gauge.builder("lazygallery.admission.in_flight", pool, p -> limit - p.availablePermits())
+                    .tag("class", trafficClass.name().toLowerCase())
+                    .register(registry);
+            }
+        }
+        this.buckets = Caffeine.newBuilder()
+            .maximumSize(props.getMaxTrackedClients())
+            .expireAfterAccess(Duration.ofMinutes(10))
+            .build();
+    }
+
+    public Permit admit(TrafficClass trafficClass, String client) throws InterruptedException {
+        if (!props.isEnabled()) {
+            return Permit.NONE;
+        }
+        AdmissionProperties.Lane lane = lane(trafficClass);
+        long now = System.nanoTime();
+        long wait = buckets.get(trafficClass.name() + '|' + client, key -> new TokenBucket(lane.getRatePerSecond(), lane.getBurst(), now))
+            .tryConsume(now);
+        if (wait > 0) {
+            throw reject(trafficClass, "rate", wait == Long.MAX_VALUE ? props.getRetryAfter() : Duration.ofNanos(wait));
+        }
+
+        Semaphore pool = pools.get(trafficClass);
+        if (pool == null) {
+            return Permit.NONE;
+        }
+        if (trafficClass.isBulk() && interactiveUtilization() > props.getBulkYieldAbove()) {
+            throw reject(trafficClass, "yield", props.getRetryAfter());
+        }
+        Duration maxWait = lane.getMaxWait();
+        boolean acquired = maxWait == null || maxWait.isZero()
+            ? pool.tryAcquire()
+            : pool.tryAcquire(maxWait.toNanos(), TimeUnit.NANOSECONDS);
+        if (!acquired) {
+            throw reject(trafficClass, "capacity", props.getRetryAfter());
+        }
+        return new Permit(pool);
+    }
+
+    private double interactiveUtilization() {
+        Semaphore pool = pools.get(TrafficClass.INTERACTIVE);
+        if (pool == null) {
+            return 0;
+        }
+        int limit = props.getInteractive().getMaxConcurrent();
+        return (double) (limit - pool.availablePermits()) / limit;
+    }
+
+    private AdmissionRejectedException reject(TrafficClass trafficClass, String reason, Duration retryAfter) {
+        registry.counter("lazygallery.admission.rejected", "class", trafficClass.name().toLowerCase(), "reason", reason).increment();
+        return new AdmissionRejectedException("Server busy (" + reason + "), retry later", retryAfter);
+    }
+
+    private AdmissionProperties.Lane lane(TrafficClass trafficClass) {
+        return switch (trafficClass) {
+            case INTERACTIVE -> props.getInteractive();
+            case ORIGINAL -> props.getOriginal();
+            case UPLOAD -> props.getUpload();
+            case ARCHIVE -> props.getArchive();
+            case EVENTS -> props.getEvents();
+        };
+    }
+
+    /**
+     * A held slot in one pool. Releasing is idempotent, so both the synchronous and the async completion
+     * paths may call it.
+     */
+    public static final class Permit {
+
+        static final Permit NONE = new Permit(null);
+
+        private final Semaphore pool;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(Semaphore pool) {
+            this.pool = pool;
+        }
+
+        public void release() {
+            if (pool != null && released.compareAndSet(false, true)) {
+                pool.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.lazygallery.service;
+
+import com.example.lazygallery.config.ArchiveProperties;
+import com.example.lazygallery.persistence.document.ArchiveDocument;
+import com.example.lazygallery.persistence.repository.ArchiveLeaseRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Ensures each archive is built once: concurrent requests in this JVM share one future, other nodes are
+ * kept out by a Mongo lease, and the build pool caps how many archives are assembled at the same time.
+ * Callers wait up to {@code app.archive.wait-timeout} and otherwise get an {@link ArchivePendingException}.
+ */
+@Component
+public class ArchiveBuildCoordinator {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchiveBuildCoordinator.class);
+
+    private final ArchiveProperties props;
+    private final ArchiveLeaseRepository leaseRepository;
+    private final ConcurrentHashMap<String, CompletableFuture<ArchiveDocument>> inFlight = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService renewer;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    public ArchiveBuildCoordinator(ArchiveProperties props, ArchiveLeaseRepository leaseRepository) {
+        this.props = props;
+        this.leaseRepository = leaseRepository;
+        this.executor = new ThreadPoolExecutor(
+            props.getMaxConcurrentBuilds(), props.getMaxConcurrentBuilds(),
+            0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(props.getMaxQueuedBuilds(), 1)),
+            new CustomizableThreadFactory("archive-build-"));
+        this.renewer = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("archive-lease-"));
+    }
+
+    public ArchiveDocument run(String key, Callable<ArchiveDocument> build) throws Exception {
+        CompletableFuture<ArchiveDocument> future = inFlight.computeIfAbsent(key, k -> start(k, build));
+        future.whenComplete((result, error) -> inFlight.remove(key, future));
+        try {
+            return future.get(props.getWaitTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            throw new ArchivePendingException("Archive is being prepared", props.getRetryAfter());
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+
+    private CompletableFuture<ArchiveDocument> start(String key, Callable<ArchiveDocument> build) {
+        CompletableFuture<ArchiveDocument> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> execute(key, build, future));
+        } catch (RejectedExecutionException ex) {
+            future.completeExceptionally(new ArchivePendingException("Archive build capacity exhausted", props.getRetryAfter()));
+        }
+        return future;
+    }
+
+    private void execute(String key, Callable<ArchiveDocument> build, CompletableFuture<ArchiveDocument> future) {
+        if (!leaseRepository.tryAcquire(key, nodeId, props.getLeaseTtl())) {
+            future.completeExceptionally(new ArchivePendingException("Archive is being prepared by another node", props.getRetryAfter()));
+            return;
+        }
+        long renewEvery = Math.max(props.getLeaseTtl().toMillis() / 3, 1000);
+        ScheduledFuture<?> renewal = renewer.scheduleAtFixedRate(() -> {
+            try {
+                if (!leaseRepository.renew(key, nodeId, props.getLeaseTtl())) {
+                    log.warn("Lost archive lease for {}", key);
+                }
+            } catch (Exception ex) {
+                log.warn("Failed to renew archive lease for {}: {}", key, ex.getMessage());
+            }
+        }, renewEvery, renewEvery, TimeUnit.MILLISECONDS);
+        try {
+            future.complete(build.call());
+        } catch (Throwable ex) {
+            log.warn("Archive build for {} failed: {}", key, ex.getMessage());
+            future.completeExceptionally(ex);
+        } finally {
+            renewal.cancel(false);
+            leaseRepository.release(key, nodeId);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        renewer.shutdownNow();
+    }
+}
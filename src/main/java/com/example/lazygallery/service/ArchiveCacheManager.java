@@ -0,0 +1,171 @@
+package com.example.lazygallery.service;
+
+import com.example.lazygallery.config.ArchiveProperties;
+import com.example.lazygallery.persistence.document.ArchiveDocument;
+import com.example.lazygallery.persistence.document.MediaAssetDocument;
+import com.example.lazygallery.persistence.repository.ArchiveLeaseRepository;
+import com.example.lazygallery.persistence.repository.ArchiveRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the archives bucket bounded. Superseded revisions are dropped once nobody has downloaded them for
+ * {@code app.archive.eviction-grace}, and the remaining archives are evicted least-recently-used first until
+ * they fit {@code app.archive.max-total-bytes}. Galleries downloaded within {@code app.archive.prewarm-window}
+ * get their current revision rebuilt ahead of the next request. One node at a time runs the pass. Downloads
+ * refresh {@code lastAccessedAt} for as long as their stream is open, so the grace period counts from the end
+ * of the last transfer rather than its start.
+ */
+@Component
+@RequiredArgsConstructor
+public class ArchiveCacheManager {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchiveCacheManager.class);
+    private static final String MAINTENANCE_LEASE = "archive-maintenance";
+
+    private final ArchiveProperties props;
+    private final ArchiveService archiveService;
+    private final ArchiveRepository archiveRepository;
+    private final ArchiveLeaseRepository leaseRepository;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ScheduledExecutorService renewer = Executors.newSingleThreadScheduledExecutor(newThreadFactory());
+    private volatile boolean leaseLost;
+
+    @Scheduled(initialDelayString = "${app.archive.eviction-interval:PT10M}", fixedDelayString = "${app.archive.eviction-interval:PT10M}")
+    public void maintain() {
+        if (!leaseRepository.tryAcquire(MAINTENANCE_LEASE, nodeId, props.getLeaseTtl())) {
+            return;
+        }
+        // Prewarm builds can outlast the lease, so it is renewed in the background like a build lease
+        leaseLost = false;
+        long renewEvery = Math.max(props.getLeaseTtl().toMillis() / 3, 1000);
+        ScheduledFuture<?> renewal = renewer.scheduleAtFixedRate(() -> {
+            try {
+                if (!leaseRepository.renew(MAINTENANCE_LEASE, nodeId, props.getLeaseTtl())) {
+                    leaseLost = true;
+                }
+            } catch (Exception ex) {
+                log.warn("Failed to renew archive maintenance lease: {}", ex.getMessage());
+            }
+        }, renewEvery, renewEvery, TimeUnit.MILLISECONDS);
+        try {
+            prewarm();
+            checkLease();
+            evict();
+        } catch (Exception ex) {
+            log.warn("Archive maintenance failed: {}", ex.getMessage());
+        } finally {
+            renewal.cancel(false);
+            leaseRepository.release(MAINTENANCE_LEASE, nodeId);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        renewer.shutdownNow();
+    }
+
+    void prewarm() {
+        int built = 0;
+        for (String galleryId : archiveRepository.findGalleryIdsAccessedSince(Instant.now().minus(props.getPrewarmWindow()))) {
+            if (built >= props.getPrewarmMaxPerCycle()) {
+                break;
+            }
+            checkLease();
+            List<MediaAssetDocument> inventory = archiveService.loadInventory(galleryId);
+            String signature = archiveService.computeSignature(inventory);
+            if (inventory.isEmpty() || archiveService.isArchived(galleryId, signature)) {
+                continue;
+            }
+            built++;
+            try {
+                archiveService.ensureArchive(galleryId, inventory, signature);
+                log.info("Prewarmed archive for gallery {}", galleryId);
+            } catch (ArchivePendingException ex) {
+                // Still building in the background, or another node holds the lease; either way it will be there
+                log.debug("Prewarm of gallery {} deferred: {}", galleryId, ex.getMessage());
+            } catch (Exception ex) {
+                log.warn("Prewarm of gallery {} failed: {}", galleryId, ex.getMessage());
+            }
+        }
+    }
+
+    void evict() {
+        Instant cutoff = Instant.now().minus(props.getEvictionGrace());
+        List<ArchiveDocument> retained = new ArrayList<>();
+        int evicted = 0;
+        long freed = 0;
+
+        // Summaries come sorted by gallery, newest first, so the first archive of each gallery is its current revision
+        String gallery = null;
+        Instant currentCreatedAt = null;
+        for (ArchiveDocument archive : archiveRepository.findSummaries()) {
+            if (!archive.getGalleryId().equals(gallery)) {
+                gallery = archive.getGalleryId();
+                currentCreatedAt = archive.getCreatedAt();
+                retained.add(archive);
+                continue;
+            }
+            if (currentCreatedAt.isBefore(cutoff) && lastAccess(archive).isBefore(cutoff)) {
+                archiveService.evict(archive);
+                evicted++;
+                freed += archive.getSize();
+            } else {
+                retained.add(archive);
+            }
+        }
+
+        long total = retained.stream().mapToLong(ArchiveDocument::getSize).sum();
+        if (total > props.getMaxTotalBytes()) {
+            retained.sort(Comparator.comparing(this::lastAccess));
+            for (ArchiveDocument archive : retained) {
+                if (total <= props.getMaxTotalBytes() || !lastAccess(archive).isBefore(cutoff)) {
+                    break;
+                }
+                archiveService.evict(archive);
+                evicted++;
+                freed += archive.getSize();
+                total -= archive.getSize();
+            }
+        }
+
+        if (evicted > 0) {
+            log.info("Evicted {} archives ({} bytes), {} bytes retained", evicted, freed, total);
+        }
+        if (total > props.getMaxTotalBytes()) {
+            log.warn("Archives use {} bytes, above the {} byte budget, but everything left was accessed recently", total, props.getMaxTotalBytes());
+        }
+    }
+
+    // Another node may have taken over maintenance; two evicting passes would fight over the same budget
+    private void checkLease() {
+        if (leaseLost) {
+            throw new IllegalStateException("Lost archive maintenance lease");
+        }
+    }
+
+    private Instant lastAccess(ArchiveDocument archive) {
+        return archive.getLastAccessedAt() != null ? archive.getLastAccessedAt() : archive.getCreatedAt();
+    }
+
+    private static CustomizableThreadFactory newThreadFactory() {
+        CustomizableThreadFactory factory = new CustomizableThreadFactory("archive-maintenance-");
+        factory.setDaemon(true);
+        return factory;
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.lazygallery.service;
+
+import java.time.Duration;
+
+public class ArchivePendingException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public ArchivePendingException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,344 @@
+package com.example.lazygallery.service;
+
+import com.example.lazygallery.config.ArchiveProperties;
+import com.example.lazygallery.config.StorageProperties;
+import com.example.lazygallery.diagnostics.ArchiveBuildEvent;
+import com.example.lazygallery.persistence.document.ArchiveDocument;
+import com.example.lazygallery.persistence.document.ArchiveEntry;
+import com.example.lazygallery.persistence.document.MediaAssetDocument;
+import com.example.lazygallery.persistence.repository.ArchiveEntryRepository;
+import com.example.lazygallery.persistence.repository.ArchiveRepository;
+import com.example.lazygallery.persistence.repository.MediaAssetRepository;
+import com.example.lazygallery.storage.ObjectStorage;
+import com.example.lazygallery.storage.ObjectStorage.ObjectSlice;
+import com.example.lazygallery.util.ZipArchiveWriter;
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+public class ArchiveService {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchiveService.class);
+    private static final String GALLERIES_PREFIX = "galleries/";
+    private static final String ARCHIVES_FOLDER = "archives/";
+    // S3 compose requires every source except the last to be at least 5 MiB
+    private static final long MIN_COMPOSE_PART = 5L * 1024 * 1024;
+
+    private final ObjectStorage storage;
+    private final StorageProperties props;
+    private final ArchiveProperties archiveProps;
+    private final ArchiveRepository archiveRepository;
+    private final ArchiveEntryRepository archiveEntryRepository;
+    private final MediaAssetRepository mediaAssetRepository;
+    private final ArchiveBuildCoordinator buildCoordinator;
+
+    public List<MediaAssetDocument> loadInventory(String galleryId) {
+        List<MediaAssetDocument> inventory = new ArrayList<>(mediaAssetRepository.findByGalleryIdOrderByUploadedAtDesc(galleryId));
+        inventory.sort(Comparator.comparing(MediaAssetDocument::getUploadedAt).reversed());
+        return inventory;
+    }
+
+    public String computeSignature(List<MediaAssetDocument> inventory) {
+        String fingerprint = inventory.stream()
+            .map(meta -> meta.getObjectKey() + '|' + meta.getSize() + '|' + meta.getUploadedAt().toEpochMilli())
+            .collect(Collectors.joining("\n"));
+        return DigestUtils.sha1Hex(fingerprint);
+    }
+
+    public ArchiveDocument ensureArchive(String galleryId, List<MediaAssetDocument> inventory, String signature) throws Exception {
+        String objectKey = galleryArchiveKey(galleryId, signature);
+        ArchiveDocument existing = archiveRepository.findByObjectKey(objectKey).orElse(null);
+        if (existing != null) {
+            return existing;
+        }
+        return buildCoordinator.run(objectKey, () -> buildOnce(galleryId, objectKey, inventory, signature));
+    }
+
+    public boolean isArchived(String galleryId, String signature) {
+        return archiveRepository.existsByObjectKey(galleryArchiveKey(galleryId, signature));
+    }
+
+    public InputStream openArchive(ArchiveDocument archive) throws Exception {
+        recordAccess(archive);
+        return new AccessRecordingInputStream(storage.open(props.getBucketArchives(), archive.getObjectKey()), archive);
+    }
+
+    private void recordAccess(ArchiveDocument archive) {
+        Instant now = Instant.now();
+        archiveRepository.recordAccess(archive.getId(), now, now.minus(archiveProps.getAccessRecordInterval()));
+    }
+
+    private ArchiveDocument buildOnce(String galleryId, String objectKey, List<MediaAssetDocument> inventory, String signature) throws Exception {
+        // Another node may have finished the same archive while this one waited for the lease
+        ArchiveDocument existing = archiveRepository.findByObjectKey(objectKey).orElse(null);
+        if (existing != null) {
+            return existing;
+        }
+
+        ArchiveDocument previous = archiveRepository.findFirstByGalleryIdOrderByCreatedAtDesc(galleryId).orElse(null);
+        List<ArchiveEntry> previousEntries = previous != null ? archiveEntryRepository.findByArchiveIdOrderByOffsetAsc(previous.getId()) : List.of();
+        List<MediaAssetDocument> additions = findAppendableAdditions(previous, previousEntries, inventory);
+        ArchiveBuildEvent event = new ArchiveBuildEvent();
+        event.begin();
+        BuiltArchive built = null;
+        String outcome = "ok";
+        try {
+            built = additions != null
+                ? appendArchive(galleryId, objectKey, signature, previous, previousEntries, additions)
+                : buildArchive(galleryId, objectKey, signature, inventory);
+        } catch (Exception ex) {
+            outcome = ex.getClass().getSimpleName();
+            throw ex;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.galleryId = galleryId;
+                event.mode = additions != null ? "append" : "full";
+                event.entries = additions != null ? additions.size() : inventory.size();
+                event.bytes = built != null ? built.archive().getSize() : 0;
+                event.outcome = outcome;
+                event.commit();
+            }
+        }
+        ArchiveDocument archive = built.archive();
+        // Carry the gallery's download activity over so prewarming and LRU eviction see the new revision as warm
+        if (previous != null) {
+            archive.setLastAccessedAt(previous.getLastAccessedAt());
+        }
+
+        // Entries go in before the archive document, so an append never finds an archive with a partial list
+        archive.setId(new ObjectId().toHexString());
+        built.entries().forEach(entry -> entry.setArchiveId(archive.getId()));
+        archiveEntryRepository.insert(built.entries());
+        try {
+            return archiveRepository.save(archive);
+        } catch (DuplicateKeyException ex) {
+            archiveEntryRepository.deleteByArchiveId(archive.getId());
+            return archiveRepository.findByObjectKey(objectKey).orElseThrow(() -> ex);
+        }
+    }
+
+    public void evict(ArchiveDocument archive) {
+        // Drop the document first so no new download or append can pick up an object that is about to vanish
+        archiveRepository.deleteById(archive.getId());
+        archiveEntryRepository.deleteByArchiveId(archive.getId());
+        removeQuietly(archive.getObjectKey());
+    }
+
+    private List<MediaAssetDocument> findAppendableAdditions(ArchiveDocument previous, List<ArchiveEntry> previousEntries,
+                                                             List<MediaAssetDocument> inventory) {
+        // Archives built before entries had their own collection have none stored and are rebuilt in full
+        if (previous == null || previousEntries.isEmpty() || previous.getCentralDirectoryOffset() < MIN_COMPOSE_PART) {
+            return null;
+        }
+        Set<String> archived = previousEntries.stream()
+            .map(ArchiveEntry::getAssetId)
+            .collect(Collectors.toSet());
+        Set<String> current = inventory.stream()
+            .map(MediaAssetDocument::getId)
+            .collect(Collectors.toSet());
+        if (!current.containsAll(archived)) {
+            return null;
+        }
+        return inventory.stream()
+            .filter(meta -> !archived.contains(meta.getId()))
+            .toList();
+    }
+
+    private BuiltArchive buildArchive(String galleryId, String objectKey, String signature, List<MediaAssetDocument> inventory) throws Exception {
+        log.info("Archive {} missing, generating new version with {} entries", objectKey, inventory.size());
+        Path temp = Files.createTempFile("archive-", ".zip");
+        try {
+            List<ArchiveEntry> entries;
+            long centralDirectoryOffset;
+            long size;
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ZipArchiveWriter writer = new ZipArchiveWriter(channel, 0, List.of());
+                entries = writeEntries(writer, inventory, new HashSet<>());
+                centralDirectoryOffset = writer.finish();
+                size = channel.size();
+            }
+            upload(temp, objectKey);
+            return new BuiltArchive(ArchiveDocument.builder()
+                .galleryId(galleryId)
+                .objectKey(objectKey)
+                .signature(signature)
+                .size(size)
+                .centralDirectoryOffset(centralDirectoryOffset)
+                .createdAt(Instant.now())
+                .build(), entries);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private BuiltArchive appendArchive(String galleryId, String objectKey, String signature, ArchiveDocument previous,
+                                       List<ArchiveEntry> previousEntries, List<MediaAssetDocument> additions) throws Exception {
+        log.info("Archive {} missing, appending {} entries to {}", objectKey, additions.size(), previous.getObjectKey());
+        List<ZipArchiveWriter.Entry> existing = previousEntries.stream()
+            .map(entry -> new ZipArchiveWriter.Entry(entry.getName(), entry.getCrc(), entry.getSize(), entry.getOffset(), entry.getDosTime()))
+            .toList();
+        Set<String> names = previousEntries.stream()
+            .map(ArchiveEntry::getName)
+            .collect(Collectors.toCollection(HashSet::new));
+
+        Path temp = Files.createTempFile("archive-", ".part");
+        String partKey = objectKey + ".part-" + UUID.randomUUID();
+        try {
+            List<ArchiveEntry> added;
+            long centralDirectoryOffset;
+            long partSize;
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ZipArchiveWriter writer = new ZipArchiveWriter(channel, previous.getCentralDirectoryOffset(), existing);
+                added = writeEntries(writer, additions, names);
+                centralDirectoryOffset = writer.finish();
+                partSize = channel.size();
+            }
+
+            // Keep the previous archive's local headers and data server-side, drop its old central directory
+            upload(temp, partKey);
+            storage.compose(props.getBucketArchives(), objectKey, List.of(
+                new ObjectSlice(previous.getObjectKey(), 0, previous.getCentralDirectoryOffset()),
+                new ObjectSlice(partKey, 0, null)), "application/zip");
+
+            List<ArchiveEntry> entries = new ArrayList<>(previousEntries.size() + added.size());
+            for (ArchiveEntry entry : previousEntries) {
+                entries.add(ArchiveEntry.builder()
+                    .assetId(entry.getAssetId())
+                    .name(entry.getName())
+                    .crc(entry.getCrc())
+                    .size(entry.getSize())
+                    .offset(entry.getOffset())
+                    .dosTime(entry.getDosTime())
+                    .build());
+            }
+            entries.addAll(added);
+            return new BuiltArchive(ArchiveDocument.builder()
+                .galleryId(galleryId)
+                .objectKey(objectKey)
+                .signature(signature)
+                .size(previous.getCentralDirectoryOffset() + partSize)
+                .centralDirectoryOffset(centralDirectoryOffset)
+                .createdAt(Instant.now())
+                .build(), entries);
+        } finally {
+            Files.deleteIfExists(temp);
+            removeQuietly(partKey);
+        }
+    }
+
+    private List<ArchiveEntry> writeEntries(ZipArchiveWriter writer, Collection<MediaAssetDocument> assets, Set<String> names) throws Exception {
+        List<ArchiveEntry> written = new ArrayList<>();
+        for (MediaAssetDocument meta : assets) {
+            String name = uniqueName(FilenameUtils.getName(meta.getOriginalName()), names);
+            try (InputStream in = storage.open(props.getBucketMedia(), meta.getObjectKey())) {
+                ZipArchiveWriter.Entry entry = writer.addEntry(name, meta.getUploadedAt(), in);
+                written.add(ArchiveEntry.builder()
+                    .assetId(meta.getId())
+                    .name(entry.name())
+                    .crc(entry.crc())
+                    .size(entry.size())
+                    .offset(entry.offset())
+                    .dosTime(entry.dosTime())
+                    .build());
+            }
+        }
+        return written;
+    }
+
+    private String uniqueName(String name, Set<String> names) {
+        String candidate = name;
+        int counter = 1;
+        while (!names.add(candidate)) {
+            String base = FilenameUtils.getBaseName(name);
+            String extension = FilenameUtils.getExtension(name);
+            candidate = base + " (" + counter++ + ")" + (extension.isEmpty() ? "" : "." + extension);
+        }
+        return candidate;
+    }
+
+    private void upload(Path file, String objectKey) throws Exception {
+        storage.putFile(props.getBucketArchives(), objectKey, file, "application/zip");
+    }
+
+    private void removeQuietly(String objectKey) {
+        try {
+            storage.remove(props.getBucketArchives(), objectKey);
+        } catch (Exception ex) {
+            log.debug("No archive object to remove for {}", objectKey);
+        }
+    }
+
+    private String galleryArchiveKey(String galleryId, String signature) {
+        return GALLERIES_PREFIX + galleryId + "/" + ARCHIVES_FOLDER + "media-" + signature + ".zip";
+    }
+
+    private record BuiltArchive(ArchiveDocument archive, List<ArchiveEntry> entries) {
+    }
+
+    /**
+     * Keeps an archive's {@code lastAccessedAt} current while a download of it is in progress, at most once per
+     * {@code app.archive.access-record-interval}, so eviction never removes an object that is still being read.
+     */
+    private class AccessRecordingInputStream extends FilterInputStream {
+
+        private final ArchiveDocument archive;
+        private long nextRecordNanos;
+
+        AccessRecordingInputStream(InputStream in, ArchiveDocument archive) {
+            super(in);
+            this.archive = archive;
+            this.nextRecordNanos = System.nanoTime() + archiveProps.getAccessRecordInterval().toNanos();
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            touch();
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            touch();
+            return read;
+        }
+
+        private void touch() {
+            if (System.nanoTime() - nextRecordNanos < 0) {
+                return;
+            }
+            nextRecordNanos = System.nanoTime() + archiveProps.getAccessRecordInterval().toNanos();
+            try {
+                recordAccess(archive);
+            } catch (RuntimeException ex) {
+                log.debug("Unable to record access to archive {}: {}", archive.getObjectKey(), ex.getMessage());
+            }
+        }
+    }
+}
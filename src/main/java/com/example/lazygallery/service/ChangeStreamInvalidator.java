@@ -0,0 +1,228 @@
+package com.example.lazygallery.service;
+
+import com.example.lazygallery.config.DocumentCacheProperties;
+import com.example.lazygallery.persistence.document.GalleryDocument;
+import com.example.lazygallery.persistence.document.MediaAssetDocument;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.mongodb.client.model.changestream.UpdateDescription;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tails one database-level change stream over the gallery and media collections and evicts the matching
+ * {@link DocumentCache} entries, so writes made on any node are visible everywhere within the stream latency.
+ * Sharing changes feed {@link ShareLookupFilter}, so a gallery or item shared on another node is found here
+ * right away instead of after the next filter refresh. Gallery changes also ask {@link GalleryEventHub} to resync live feeds here, because every media write bumps its
+ * gallery's statistics and deltas are only pushed by the node that made the write.
+ * The resume token is kept across reconnects; when the stream cannot be resumed, or the deployment is not a
+ * replica set, the cache runs on its fallback TTL until the stream is back.
+ */
+@Component
+public class ChangeStreamInvalidator {
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeStreamInvalidator.class);
+    private static final int CHANGE_STREAM_HISTORY_LOST = 286;
+    private static final int CHANGE_STREAM_FATAL = 280;
+    private static final int NOT_A_REPLICA_SET = 40573;
+
+    private final DocumentCacheProperties props;
+    private final MongoTemplate mongoTemplate;
+    private final DocumentCache cache;
+    private final GalleryEventHub eventHub;
+    private final ShareLookupFilter shareLookupFilter;
+    private final Timer lag;
+    private final String galleries;
+    private final String mediaAssets;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(newThreadFactory());
+    private volatile boolean running;
+    private BsonDocument resumeToken;
+
+    public ChangeStreamInvalidator(DocumentCacheProperties props, MongoTemplate mongoTemplate, DocumentCache cache,
+                                   GalleryEventHub eventHub, ShareLookupFilter shareLookupFilter, MeterRegistry registry) {
+        this.props = props;
+        this.mongoTemplate = mongoTemplate;
+        this.cache = cache;
+        this.eventHub = eventHub;
+        this.shareLookupFilter = shareLookupFilter;
+        this.lag = Timer.builder("lazygallery.invalidation.lag").register(registry);
+        this.galleries = mongoTemplate.getCollectionName(GalleryDocument.class);
+        this.mediaAssets = mongoTemplate.getCollectionName(MediaAssetDocument.class);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!props.isEnabled()) {
+            return;
+        }
+        running = true;
+        executor.execute(this::run);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        executor.shutdownNow();
+    }
+
+    private void run() {
+        long backoff = props.getReconnectBackoff().toMillis();
+        boolean warnedStandalone = false;
+        while (running) {
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = open()) {
+                cache.setStreaming(true);
+                backoff = props.getReconnectBackoff().toMillis();
+                log.info("Document cache invalidation stream connected{}", resumeToken != null ? " (resumed)" : "");
+                while (running) {
+                    ChangeStreamDocument<Document> event = cursor.tryNext();
+                    // Track the post-batch token too, so an idle stream still resumes from a recent position
+                    if (cursor.getResumeToken() != null) {
+                        resumeToken = cursor.getResumeToken();
+                    }
+                    if (event != null) {
+                        dispatch(event);
+                    }
+                }
+            } catch (MongoCommandException ex) {
+                if (ex.getErrorCode() == NOT_A_REPLICA_SET) {
+                    if (!warnedStandalone) {
+                        log.warn("MongoDB is not a replica set, document cache falls back to a {} TTL", props.getFallbackTtl());
+                        warnedStandalone = true;
+                    }
+                    backoff = props.getMaxReconnectBackoff().toMillis();
+                } else if (ex.getErrorCode() == CHANGE_STREAM_HISTORY_LOST || ex.getErrorCode() == CHANGE_STREAM_FATAL) {
+                    log.warn("Invalidation stream cannot be resumed, restarting from now: {}", ex.getMessage());
+                    resumeToken = null;
+                } else {
+                    log.warn("Invalidation stream failed: {}", ex.getMessage());
+                }
+                cache.setStreaming(false);
+            } catch (MongoException | IllegalStateException ex) {
+                if (running) {
+                    log.warn("Invalidation stream interrupted: {}", ex.getMessage());
+                }
+                cache.setStreaming(false);
+            }
+            if (!running || !sleep(backoff)) {
+                break;
+            }
+            backoff = Math.min(backoff * 2, props.getMaxReconnectBackoff().toMillis());
+        }
+        cache.setStreaming(false);
+    }
+
+    private MongoChangeStreamCursor<ChangeStreamDocument<Document>> open() {
+        ChangeStreamIterable<Document> stream = mongoTemplate.getDb()
+            .watch(List.of(Aggregates.match(Filters.in("ns.coll", galleries, mediaAssets))))
+            .maxAwaitTime(1, TimeUnit.SECONDS);
+        if (resumeToken != null) {
+            stream = stream.resumeAfter(resumeToken);
+        }
+        return stream.cursor();
+    }
+
+    private void dispatch(ChangeStreamDocument<Document> event) {
+        OperationType type = event.getOperationType();
+        if (type == OperationType.INVALIDATE || type == OperationType.DROP || type == OperationType.RENAME
+            || type == OperationType.DROP_DATABASE) {
+            cache.invalidateAll();
+            if (type == OperationType.INVALIDATE) {
+                resumeToken = null;
+            }
+            return;
+        }
+        String id = documentId(event.getDocumentKey());
+        if (id == null || event.getNamespace() == null) {
+            return;
+        }
+        String collection = event.getNamespace().getCollectionName();
+        if (galleries.equals(collection)) {
+            cache.invalidateGallery(id);
+            eventHub.resync(id);
+            galleryShared(id, event);
+        } else if (mediaAssets.equals(collection)) {
+            cache.invalidateMedia(id);
+            Boolean shared = sharedFlag(event);
+            if (shared != null) {
+                shareLookupFilter.mediaSharingChanged(id, shared);
+            }
+        }
+        if (event.getWallTime() != null) {
+            lag.record(Duration.ofMillis(Math.max(System.currentTimeMillis() - event.getWallTime().getValue(), 0)));
+        }
+    }
+
+    private void galleryShared(String id, ChangeStreamDocument<Document> event) {
+        Boolean shared = sharedFlag(event);
+        if (shared == null) {
+            return;
+        }
+        String shareSlug = event.getFullDocument() != null ? event.getFullDocument().getString("shareSlug") : null;
+        if (shareSlug == null) {
+            // An update that only flipped the flag: the slug has to be read back
+            GalleryDocument gallery = mongoTemplate.findById(id, GalleryDocument.class);
+            shareSlug = gallery != null ? gallery.getShareSlug() : null;
+        }
+        shareLookupFilter.gallerySharingChanged(shareSlug, shared);
+    }
+
+    // Inserts and replaces carry the whole document, updates only the fields they set
+    private Boolean sharedFlag(ChangeStreamDocument<Document> event) {
+        if (event.getFullDocument() != null) {
+            return Boolean.TRUE.equals(event.getFullDocument().getBoolean("shared"));
+        }
+        UpdateDescription update = event.getUpdateDescription();
+        BsonValue shared = update != null && update.getUpdatedFields() != null ? update.getUpdatedFields().get("shared") : null;
+        return shared != null && shared.isBoolean() ? shared.asBoolean().getValue() : null;
+    }
+
+    private String documentId(BsonDocument key) {
+        BsonValue id = key != null ? key.get("_id") : null;
+        if (id == null) {
+            return null;
+        }
+        if (id.isObjectId()) {
+            return id.asObjectId().getValue().toHexString();
+        }
+        return id.isString() ? id.asString().getValue() : null;
+    }
+
+    private boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static CustomizableThreadFactory newThreadFactory() {
+        CustomizableThreadFactory factory = new CustomizableThreadFactory("cache-invalidation-");
+        factory.setDaemon(true);
+        return factory;
+    }
+}
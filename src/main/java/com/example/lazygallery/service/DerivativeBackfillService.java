@@ -0,0 +1,266 @@
+package com.example.lazygallery.service;
+
+import com.example.lazygallery.config.DerivativeProperties;
+import com.example.lazygallery.model.DerivativeJobView;
+import com.example.lazygallery.persistence.document.DerivativeJobDocument;
+import com.example.lazygallery.persistence.document.DerivativeJobDocument.Status;
+import com.example.lazygallery.persistence.document.MediaAssetDocument;
+import com.example.lazygallery.persistence.repository.ArchiveLeaseRepository;
+import com.example.lazygallery.persistence.repository.DerivativeJobRepository;
+import com.example.lazygallery.persistence.repository.MediaAssetRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Regenerates thumbnails whose profile is missing or differs from the configured one. The scan walks
+ * mediaAssets in _id order and checkpoints the cursor and counters after every batch, so a paused or
+ * interrupted job continues where it stopped. Work is spread over a small worker pool and paced to
+ * {@code app.derivatives.max-per-second} so live uploads and previews keep priority. Only the node holding
+ * the backfill lease runs the job; the lease lives for {@code stale-after} and is renewed with every
+ * checkpoint, so a crashed node's job can be taken over once it goes stale.
+ */
+@Service
+public class DerivativeBackfillService {
+
+    private static final Logger log = LoggerFactory.getLogger(DerivativeBackfillService.class);
+    private static final String LEASE = "derivative-backfill";
+
+    private final DerivativeProperties props;
+    private final DerivativeJobRepository jobRepository;
+    private final MediaAssetRepository mediaAssetRepository;
+    private final MediaService mediaService;
+    private final ArchiveLeaseRepository leaseRepository;
+    private final ExecutorService driver;
+    private final ExecutorService workers;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Object pacerLock = new Object();
+
+    private volatile DerivativeJobDocument current;
+    private volatile boolean pauseRequested;
+    private long nextSlot = System.nanoTime();
+
+    public DerivativeBackfillService(DerivativeProperties props, DerivativeJobRepository jobRepository,
+                                     MediaAssetRepository mediaAssetRepository, MediaService mediaService,
+                                     ArchiveLeaseRepository leaseRepository) {
+        this.props = props;
+        this.jobRepository = jobRepository;
+        this.mediaAssetRepository = mediaAssetRepository;
+        this.mediaService = mediaService;
+        this.leaseRepository = leaseRepository;
+        CustomizableThreadFactory driverFactory = new CustomizableThreadFactory("derivative-backfill-");
+        driverFactory.setDaemon(true);
+        this.driver = Executors.newSingleThreadExecutor(driverFactory);
+        CustomizableThreadFactory workerFactory = new CustomizableThreadFactory("derivative-worker-");
+        workerFactory.setDaemon(true);
+        this.workers = Executors.newFixedThreadPool(Math.max(props.getConcurrency(), 1), workerFactory);
+    }
+
+    public synchronized DerivativeJobView start() {
+        if (current != null) {
+            return toView(current);
+        }
+        if (!leaseRepository.tryAcquire(LEASE, nodeId, props.getStaleAfter())) {
+            throw new IllegalStateException("Derivative backfill is already running on another node");
+        }
+        try {
+            current = claim();
+        } catch (RuntimeException ex) {
+            leaseRepository.release(LEASE, nodeId);
+            throw ex;
+        }
+        driver.execute(this::run);
+        return toView(current);
+    }
+
+    private DerivativeJobDocument claim() {
+        String profile = mediaService.currentThumbnailProfile();
+        DerivativeJobDocument latest = jobRepository.findFirstByOrderByStartedAtDesc().orElse(null);
+        DerivativeJobDocument job;
+        if (latest != null && latest.getStatus() != Status.COMPLETED && profile.equals(latest.getProfile())) {
+            job = latest;
+            log.info("Resuming derivative backfill {} after {}", job.getId(), job.getCursor());
+        } else {
+            job = DerivativeJobDocument.builder()
+                .profile(profile)
+                .startedAt(Instant.now())
+                .build();
+            log.info("Starting derivative backfill for profile {}", profile);
+        }
+        job.setStatus(Status.RUNNING);
+        job.setNodeId(nodeId);
+        job.setFinishedAt(null);
+        pauseRequested = false;
+        return checkpoint(job);
+    }
+
+    public synchronized DerivativeJobView pause() {
+        if (current == null) {
+            return status();
+        }
+        pauseRequested = true;
+        return toView(current);
+    }
+
+    public DerivativeJobView status() {
+        DerivativeJobDocument job = current;
+        if (job != null) {
+            return toView(job);
+        }
+        return jobRepository.findFirstByOrderByStartedAtDesc()
+            .map(this::toView)
+            .orElseGet(() -> DerivativeJobView.builder()
+                .currentProfile(mediaService.currentThumbnailProfile())
+                .build());
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterrupted() {
+        jobRepository.findFirstByOrderByStartedAtDesc()
+            .filter(job -> job.getStatus() == Status.RUNNING && isStale(job))
+            .ifPresent(job -> {
+                try {
+                    start();
+                } catch (Exception ex) {
+                    log.warn("Unable to resume derivative backfill {}: {}", job.getId(), ex.getMessage());
+                }
+            });
+    }
+
+    private void run() {
+        DerivativeJobDocument job = current;
+        boolean leaseLost = false;
+        try {
+            while (!pauseRequested) {
+                List<MediaAssetDocument> batch = mediaAssetRepository.findOutdatedThumbnails(job.getCursor(), job.getProfile(), props.getBatchSize());
+                if (batch.isEmpty()) {
+                    job.setStatus(Status.COMPLETED);
+                    job.setFinishedAt(Instant.now());
+                    break;
+                }
+                processBatch(job, batch);
+                job.setCursor(batch.get(batch.size() - 1).getId());
+                job.setScanned(job.getScanned() + batch.size());
+                current = job = checkpoint(job);
+                if (!leaseRepository.renew(LEASE, nodeId, props.getStaleAfter())) {
+                    leaseLost = true;
+                    break;
+                }
+            }
+            if (job.getStatus() == Status.RUNNING) {
+                job.setStatus(Status.PAUSED);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            job.setStatus(Status.PAUSED);
+        } catch (Exception ex) {
+            log.warn("Derivative backfill {} failed: {}", job.getId(), ex.getMessage());
+            job.setStatus(Status.FAILED);
+            job.setLastError(ex.getMessage());
+        } finally {
+            if (leaseLost) {
+                // Another node may own the job by now, so leave its document alone
+                log.warn("Lost the derivative backfill lease, stopping {} after {}", job.getId(), job.getCursor());
+            } else {
+                try {
+                    checkpoint(job);
+                } catch (Exception ex) {
+                    log.warn("Unable to checkpoint derivative backfill {}: {}", job.getId(), ex.getMessage());
+                }
+                leaseRepository.release(LEASE, nodeId);
+            }
+            log.info("Derivative backfill {} {}: scanned {}, regenerated {}, failed {}",
+                job.getId(), job.getStatus(), job.getScanned(), job.getRegenerated(), job.getFailed());
+            current = null;
+        }
+    }
+
+    private void processBatch(DerivativeJobDocument job, List<MediaAssetDocument> batch) throws InterruptedException {
+        List<Future<Boolean>> futures = new ArrayList<>(batch.size());
+        for (MediaAssetDocument document : batch) {
+            futures.add(workers.submit(() -> {
+                pace();
+                return mediaService.regenerateThumbnail(document);
+            }));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                if (futures.get(i).get()) {
+                    job.setRegenerated(job.getRegenerated() + 1);
+                }
+            } catch (ExecutionException ex) {
+                // Failed assets stay outdated and are picked up again by the next run
+                String message = batch.get(i).getId() + ": " + ex.getCause().getMessage();
+                log.warn("Failed to regenerate thumbnail for {}", message);
+                job.setFailed(job.getFailed() + 1);
+                job.setLastError(message);
+            }
+        }
+    }
+
+    private void pace() throws InterruptedException {
+        if (props.getMaxPerSecond() <= 0) {
+            return;
+        }
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / props.getMaxPerSecond());
+        long slot;
+        synchronized (pacerLock) {
+            slot = Math.max(nextSlot, System.nanoTime());
+            nextSlot = slot + interval;
+        }
+        long wait = slot - System.nanoTime();
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    private DerivativeJobDocument checkpoint(DerivativeJobDocument job) {
+        job.setUpdatedAt(Instant.now());
+        return jobRepository.save(job);
+    }
+
+    private boolean isStale(DerivativeJobDocument job) {
+        return job.getUpdatedAt() == null || job.getUpdatedAt().isBefore(Instant.now().minus(props.getStaleAfter()));
+    }
+
+    private DerivativeJobView toView(DerivativeJobDocument job) {
+        return DerivativeJobView.builder()
+            .id(job.getId())
+            .profile(job.getProfile())
+            .currentProfile(mediaService.currentThumbnailProfile())
+            .status(job.getStatus() != null ? job.getStatus().name() : null)
+            .runningHere(job == current)
+            .cursor(job.getCursor())
+            .scanned(job.getScanned())
+            .regenerated(job.getRegenerated())
+            .failed(job.getFailed())
+            .lastError(job.getLastError())
+            .startedAt(job.getStartedAt() != null ? job.getStartedAt().toEpochMilli() : null)
+            .updatedAt(job.getUpdatedAt() != null ? job.getUpdatedAt().toEpochMilli() : null)
+            .finishedAt(job.getFinishedAt() != null ? job.getFinishedAt().toEpochMilli() : null)
+            .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pauseRequested = true;
+        driver.shutdownNow();
+        workers.shutdownNow();
+    }
+}
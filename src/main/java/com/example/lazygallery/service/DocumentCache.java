@@ -0,0 +1,140 @@
+package com.example.lazygallery.service;
+
+import com.example.lazygallery.config.DocumentCacheProperties;
+import com.example.lazygallery.persistence.document.GalleryDocument;
+import com.example.lazygallery.persistence.document.MediaAssetDocument;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Node-local cache of gallery and media documents on the request path. Entries are evicted by
+ * {@link ChangeStreamInvalidator} as soon as any node writes them; while the change stream is not connected
+ * new entries only live for {@code app.document-cache.fallback-ttl}, so staleness stays bounded either way.
+ */
+@Component
+public class DocumentCache {
+
+    private final DocumentCacheProperties props;
+    private final Cache<String, GalleryDocument> galleries;
+    private final Cache<String, String> gallerySlugs;
+    private final Cache<String, MediaAssetDocument> media;
+    // Bumped by every invalidation. The get(key, loader) paths do not need it: Caffeine holds an invalidation
+    // of a key until its load finishes. Only galleryBySlug loads outside that lock and checks it before putting.
+    private final AtomicLong invalidations = new AtomicLong();
+    private volatile boolean streaming;
+
+    public DocumentCache(DocumentCacheProperties props, MeterRegistry registry) {
+        this.props = props;
+        this.galleries = newCache();
+        this.gallerySlugs = newCache();
+        this.media = newCache();
+        CaffeineCacheMetrics.monitor(registry, galleries, "documents.galleries");
+        CaffeineCacheMetrics.monitor(registry, media, "documents.media");
+    }
+
+    public Optional<GalleryDocument> gallery(String galleryId, Function<String, Optional<GalleryDocument>> loader) {
+        if (!props.isEnabled()) {
+            return loader.apply(galleryId);
+        }
+        return Optional.ofNullable(galleries.get(galleryId, id -> loader.apply(id).orElse(null)));
+    }
+
+    public Optional<GalleryDocument> galleryBySlug(String shareSlug, Function<String, Optional<GalleryDocument>> loader) {
+        if (!props.isEnabled()) {
+            return loader.apply(shareSlug);
+        }
+        String galleryId = gallerySlugs.getIfPresent(shareSlug);
+        if (galleryId != null) {
+            GalleryDocument cached = galleries.getIfPresent(galleryId);
+            // The slug mapping is only a hint; a gallery that has since moved to another slug falls through to a reload
+            if (cached != null && Objects.equals(cached.getShareSlug(), shareSlug)) {
+                return Optional.of(cached);
+            }
+            gallerySlugs.invalidate(shareSlug);
+        }
+        long generation = invalidations.get();
+        Optional<GalleryDocument> loaded = loader.apply(shareSlug);
+        // Skip the put if an invalidation raced with the load, it may have been for this very gallery
+        if (loaded.isPresent() && invalidations.get() == generation) {
+            galleries.put(loaded.get().getId(), loaded.get());
+            gallerySlugs.put(shareSlug, loaded.get().getId());
+        }
+        return loaded;
+    }
+
+    public Optional<MediaAssetDocument> media(String mediaId, Function<String, Optional<MediaAssetDocument>> loader) {
+        if (!props.isEnabled()) {
+            return loader.apply(mediaId);
+        }
+        return Optional.ofNullable(media.get(mediaId, id -> loader.apply(id).orElse(null)));
+    }
+
+    public void invalidateGallery(String galleryId) {
+        invalidations.incrementAndGet();
+        galleries.invalidate(galleryId);
+    }
+
+    public void invalidateMedia(String mediaId) {
+        invalidations.incrementAndGet();
+        media.invalidate(mediaId);
+    }
+
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        galleries.invalidateAll();
+        gallerySlugs.invalidateAll();
+        media.invalidateAll();
+    }
+
+    /**
+     * Switches between the long and the fallback lifetime. Losing the stream drops everything: changes made
+     * while it is down only arrive once it resumes from its token, or never if the server no longer has that
+     * history, so cached entries could stay stale until then.
+     */
+    public void setStreaming(boolean streaming) {
+        if (this.streaming && !streaming) {
+            invalidateAll();
+        }
+        this.streaming = streaming;
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    private <V> Cache<String, V> newCache() {
+        return Caffeine.newBuilder()
+            .maximumSize(props.getMaxEntries())
+            .expireAfter(new Expiry<String, V>() {
+                @Override
+                public long expireAfterCreate(String key, V value, long currentTime) {
+                    return lifetimeNanos();
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, V value, long currentTime, long currentDuration) {
+                    return lifetimeNanos();
+                }
+
+                @Override
+                public long expireAfterRead(String key, V value, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .recordStats()
+            .build();
+    }
+
+    private long lifetimeNanos() {
+        return (streaming ? props.getTtl() : props.getFallbackTtl()).toNanos();
+    }
+}
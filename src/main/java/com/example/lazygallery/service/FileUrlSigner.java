@@ -0,0 +1,128 @@
+package com.example.lazygallery.service;
+
+import com.example.lazygallery.config.SigningProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Issues and verifies capability tokens for file URLs. A token names the signing key, the bucket and
+ * object key, and an expiry, and carries an HMAC-SHA256 over them, so a file endpoint can authorize a
+ * request without looking anything up. Expiries are rounded up to {@code app.signing.expiry-bucket}, which
+ * keeps the URL for an object identical across listings within a bucket and lets browsers and CDNs cache it.
+ * Keys rotate by adding a new entry under {@code app.signing.keys}, pointing {@code active-key} at it, and
+ * removing the old entry once every token it signed has expired. Without keys the signer refuses to start
+ * unless {@code allow-ephemeral} opts into a random per-process key.
+ */
+@Component
+public class FileUrlSigner {
+
+    public static final String MEDIA = "media";
+    public static final String THUMBNAILS = "thumbnails";
+
+    private static final Logger log = LoggerFactory.getLogger(FileUrlSigner.class);
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final String EPHEMERAL_KEY = "local";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SigningProperties props;
+    private final Map<String, SecretKeySpec> keys = new HashMap<>();
+    private final String activeKey;
+
+    public FileUrlSigner(SigningProperties props) {
+        this.props = props;
+        props.getKeys().forEach((id, secret) -> keys.put(id, new SecretKeySpec(Base64.getDecoder().decode(secret), ALGORITHM)));
+        if (keys.isEmpty()) {
+            // Tokens from a random key only verify on this node and stop working after a restart
+            if (!props.isAllowEphemeral()) {
+                throw new IllegalStateException("app.signing.keys is empty; configure a signing key or set app.signing.allow-ephemeral=true for a single node");
+            }
+            log.warn("No app.signing.keys configured, signing file URLs with an ephemeral key");
+            byte[] secret = new byte[32];
+            new SecureRandom().nextBytes(secret);
+            keys.put(EPHEMERAL_KEY, new SecretKeySpec(secret, ALGORITHM));
+            this.activeKey = EPHEMERAL_KEY;
+        } else if (StringUtils.hasText(props.getActiveKey()) && keys.containsKey(props.getActiveKey())) {
+            this.activeKey = props.getActiveKey();
+        } else {
+            throw new IllegalStateException("app.signing.active-key must name one of app.signing.keys");
+        }
+    }
+
+    public String sign(String bucket, String objectKey) {
+        byte[] payload = payload(bucket, objectKey, currentExpiry());
+        return activeKey + "." + ENCODER.encodeToString(payload) + "." + ENCODER.encodeToString(mac(keys.get(activeKey), payload));
+    }
+
+    /**
+     * Expiry stamped into links signed now. It only moves once per expiry bucket, so responses that embed
+     * signed links can be versioned by it.
+     */
+    public long currentExpiry() {
+        long bucketSeconds = Math.max(props.getExpiryBucket().toSeconds(), 1);
+        long earliest = Instant.now().plus(props.getTtl()).getEpochSecond();
+        return (earliest + bucketSeconds - 1) / bucketSeconds * bucketSeconds;
+    }
+
+    public SignedObject verify(String token, String expectedBucket) {
+        String[] parts = token == null ? new String[0] : token.split("\\.", -1);
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Invalid file link");
+        }
+        SecretKeySpec key = keys.get(parts[0]);
+        if (key == null) {
+            throw new IllegalArgumentException("Invalid file link");
+        }
+        byte[] payload;
+        byte[] signature;
+        try {
+            payload = DECODER.decode(parts[1]);
+            signature = DECODER.decode(parts[2]);
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Invalid file link");
+        }
+        if (!MessageDigest.isEqual(mac(key, payload), signature)) {
+            throw new IllegalArgumentException("Invalid file link");
+        }
+
+        String[] fields = new String(payload, StandardCharsets.UTF_8).split("\n", -1);
+        if (fields.length != 3 || !fields[0].equals(expectedBucket)) {
+            throw new IllegalArgumentException("Invalid file link");
+        }
+        Instant expiresAt = Instant.ofEpochSecond(Long.parseLong(fields[2]));
+        if (expiresAt.isBefore(Instant.now())) {
+            throw new IllegalArgumentException("File link expired");
+        }
+        return new SignedObject(fields[0], fields[1], expiresAt);
+    }
+
+    private static byte[] payload(String bucket, String objectKey, long expires) {
+        return (bucket + "\n" + objectKey + "\n" + expires).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] mac(SecretKeySpec key, byte[] payload) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(payload);
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("Unable to sign file URL", ex);
+        }
+    }
+
+    public record SignedObject(String bucket, String objectKey, Instant expiresAt) {
+    }
+}
@@ -0,0 +1,302 @@
+package com.example.lazygallery.service;
+
+import com.example.lazygallery.config.EventFeedProperties;
+import com.example.lazygallery.model.MediaItem;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fans gallery deltas out to server-sent event subscribers. Each subscription is a parked async request, so
+ * idle connections hold no thread; each subscriber has its own queue drained on a small dispatch pool, and a
+ * single timer emits heartbeat comments only to subscribers that have seen no traffic for a whole interval.
+ * Subscribers that let their queue overflow or block a send past {@code app.events.send-timeout} are dropped.
+ */
+@Component
+public class GalleryEventHub {
+
+    public static final String UPLOAD = "upload";
+    public static final String DELETE = "delete";
+    public static final String SHARING = "sharing";
+    public static final String RESYNC = "resync";
+
+    private static final Logger log = LoggerFactory.getLogger(GalleryEventHub.class);
+
+    private final EventFeedProperties props;
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<String, Long> lastLocalPublish = new ConcurrentHashMap<>();
+    private final Set<String> pendingResyncs = ConcurrentHashMap.newKeySet();
+    private final ExecutorService dispatcher;
+    private final ScheduledExecutorService heartbeat;
+
+    public GalleryEventHub(EventFeedProperties props, MeterRegistry registry) {
+        this.props = props;
+        this.dispatcher = Executors.newFixedThreadPool(Math.max(props.getDispatchThreads(), 1), newThreadFactory("gallery-events-"));
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(newThreadFactory("gallery-heartbeat-"));
+        long interval = props.getHeartbeatInterval().toMillis();
+        this.heartbeat.scheduleWithFixedDelay(this::sendHeartbeats, interval, interval, TimeUnit.MILLISECONDS);
+        long sweep = Math.max(props.getSendTimeout().toMillis() / 2, 1000);
+        this.heartbeat.scheduleWithFixedDelay(this::abortStalledSends, sweep, sweep, TimeUnit.MILLISECONDS);
+        Gauge.builder("lazygallery.events.subscribers", subscriberCount, AtomicInteger::get).register(registry);
+    }
+
+    public SseEmitter subscribe(String galleryId, boolean sharedOnly) {
+        if (subscriberCount.incrementAndGet() > props.getMaxSubscribers()) {
+            subscriberCount.decrementAndGet();
+            throw new SubscriberLimitException("Too many live subscribers");
+        }
+        SseEmitter emitter = new SseEmitter(props.getEmitterTimeout().toMillis());
+        Subscriber subscriber = new Subscriber(galleryId, sharedOnly, emitter);
+        // Adds and removals both go through compute so an emptied set is never dropped while a subscriber joins it
+        subscribers.compute(galleryId, (id, current) -> {
+            Set<Subscriber> targets = current != null ? current : ConcurrentHashMap.newKeySet();
+            targets.add(subscriber);
+            return targets;
+        });
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(error -> remove(subscriber));
+        // Opening comment makes proxies flush the response headers right away
+        enqueue(subscriber, SseEmitter.event().comment("connected"));
+        return emitter;
+    }
+
+    /**
+     * Publishes one delta to the owners of a gallery and a possibly different one to visitors of its shared
+     * link. Either side may be null to skip that audience.
+     */
+    public void publish(String galleryId, GalleryEvent ownerEvent, GalleryEvent sharedEvent) {
+        Set<Subscriber> targets = subscribers.get(galleryId);
+        if (targets == null || targets.isEmpty()) {
+            return;
+        }
+        lastLocalPublish.put(galleryId, System.nanoTime());
+        long id = sequence.incrementAndGet();
+        for (Subscriber subscriber : targets) {
+            GalleryEvent event = subscriber.sharedOnly ? sharedEvent : ownerEvent;
+            if (event != null) {
+                enqueue(subscriber, SseEmitter.event().id(Long.toString(id)).name(event.name()).data(event.item(), MediaType.APPLICATION_JSON));
+            }
+        }
+    }
+
+    /**
+     * Tells this node's subscribers of a gallery that it changed somewhere else and their listing should be
+     * reloaded. Bursts are coalesced over {@code app.events.resync-delay}, and the event is skipped when this
+     * node published a delta for the gallery around the same time, since that change was already delivered.
+     */
+    public void resync(String galleryId) {
+        if (!subscribers.containsKey(galleryId) || !pendingResyncs.add(galleryId)) {
+            return;
+        }
+        long requestedAt = System.nanoTime();
+        try {
+            heartbeat.schedule(() -> sendResync(galleryId, requestedAt), props.getResyncDelay().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ex) {
+            pendingResyncs.remove(galleryId);
+        }
+    }
+
+    public void closeShared(String galleryId) {
+        Set<Subscriber> targets = subscribers.get(galleryId);
+        if (targets == null) {
+            return;
+        }
+        for (Subscriber subscriber : targets) {
+            if (subscriber.sharedOnly) {
+                close(subscriber);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeat.shutdownNow();
+        dispatcher.shutdownNow();
+        subscribers.values().forEach(targets -> targets.forEach(subscriber -> subscriber.emitter.complete()));
+    }
+
+    private void sendHeartbeats() {
+        long idleBefore = System.nanoTime() - props.getHeartbeatInterval().toNanos();
+        for (Set<Subscriber> targets : subscribers.values()) {
+            for (Subscriber subscriber : targets) {
+                if (subscriber.lastSentNanos <= idleBefore && subscriber.pendingCount.get() == 0) {
+                    enqueue(subscriber, SseEmitter.event().comment(""));
+                }
+            }
+        }
+    }
+
+    private void sendResync(String galleryId, long requestedAt) {
+        pendingResyncs.remove(galleryId);
+        Set<Subscriber> targets = subscribers.get(galleryId);
+        Long published = lastLocalPublish.get(galleryId);
+        if (targets == null || published != null && published - requestedAt > -props.getResyncDelay().toNanos()) {
+            return;
+        }
+        for (Subscriber subscriber : targets) {
+            enqueue(subscriber, SseEmitter.event().name(RESYNC).data(Map.of("galleryId", galleryId), MediaType.APPLICATION_JSON));
+        }
+    }
+
+    // A send blocked on a client that stopped reading is interrupted and the subscriber dropped
+    private void abortStalledSends() {
+        long now = System.nanoTime();
+        long timeout = props.getSendTimeout().toNanos();
+        for (Set<Subscriber> targets : subscribers.values()) {
+            for (Subscriber subscriber : targets) {
+                synchronized (subscriber) {
+                    if (subscriber.sender != null && now - subscriber.sendStartedNanos > timeout) {
+                        log.debug("Event send to a subscriber of gallery {} stalled, dropping it", subscriber.galleryId);
+                        close(subscriber);
+                        subscriber.sender.interrupt();
+                    }
+                }
+            }
+        }
+    }
+
+    private void enqueue(Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        if (subscriber.pendingCount.incrementAndGet() > props.getMaxPendingEvents()) {
+            // Too far behind to catch up; the client reconnects and reloads instead
+            log.debug("Event subscriber for gallery {} fell behind, dropping it", subscriber.galleryId);
+            close(subscriber);
+            return;
+        }
+        subscriber.pending.add(event);
+        schedule(subscriber);
+    }
+
+    private void close(Subscriber subscriber) {
+        subscriber.closing = true;
+        remove(subscriber);
+        schedule(subscriber);
+    }
+
+    private void schedule(Subscriber subscriber) {
+        if (subscriber.draining.compareAndSet(false, true)) {
+            try {
+                dispatcher.execute(() -> drain(subscriber));
+            } catch (RejectedExecutionException ex) {
+                subscriber.draining.set(false);
+            }
+        }
+    }
+
+    /**
+     * Sends a subscriber's queued events in order. At most one drain per subscriber runs at a time, so
+     * events never overtake each other, and a slow client only ever occupies one dispatch thread.
+     */
+    private void drain(Subscriber subscriber) {
+        while (true) {
+            SseEmitter.SseEventBuilder event;
+            while (!subscriber.closing && (event = subscriber.pending.poll()) != null) {
+                subscriber.pendingCount.decrementAndGet();
+                if (!send(subscriber, event)) {
+                    // Already completed with the error; draining stays set so it is never scheduled again
+                    subscriber.pending.clear();
+                    return;
+                }
+            }
+            if (subscriber.closing) {
+                subscriber.pending.clear();
+                subscriber.emitter.complete();
+                return;
+            }
+            subscriber.draining.set(false);
+            if (subscriber.pending.isEmpty() || !subscriber.draining.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    private boolean send(Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        synchronized (subscriber) {
+            Thread.interrupted();
+            subscriber.sendStartedNanos = System.nanoTime();
+            subscriber.sender = Thread.currentThread();
+        }
+        try {
+            subscriber.emitter.send(event);
+            subscriber.lastSentNanos = System.nanoTime();
+            return true;
+        } catch (IOException | IllegalStateException ex) {
+            // The client went away; completing releases the async request and triggers removal
+            log.debug("Dropping event subscriber for gallery {}: {}", subscriber.galleryId, ex.getMessage());
+            subscriber.emitter.completeWithError(ex);
+            remove(subscriber);
+            return false;
+        } finally {
+            synchronized (subscriber) {
+                subscriber.sender = null;
+                Thread.interrupted();
+            }
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.galleryId, (id, current) -> {
+            if (current.remove(subscriber)) {
+                subscriberCount.decrementAndGet();
+            }
+            if (current.isEmpty()) {
+                lastLocalPublish.remove(id);
+                return null;
+            }
+            return current;
+        });
+    }
+
+    private static CustomizableThreadFactory newThreadFactory(String prefix) {
+        CustomizableThreadFactory factory = new CustomizableThreadFactory(prefix);
+        factory.setDaemon(true);
+        return factory;
+    }
+
+    public record GalleryEvent(String name, MediaItem item) {
+    }
+
+    private static final class Subscriber {
+
+        private final String galleryId;
+        private final boolean sharedOnly;
+        private final SseEmitter emitter;
+        private final Queue<SseEmitter.SseEventBuilder> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pendingCount = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean closing;
+        private volatile long lastSentNanos = System.nanoTime();
+        // Guarded by the subscriber's monitor so an interrupt can only land while this send is in flight
+        private long sendStartedNanos;
+        private Thread sender;
+
+        Subscriber(String galleryId, boolean sharedOnly, SseEmitter emitter) {
+            this.galleryId = galleryId;
+            this.sharedOnly = sharedOnly;
+            this.emitter = emitter;
+        }
+    }
+}
@@ -1,9 +1,18 @@
 package com.example.lazygallery.service;
 
+import com.example.lazygallery.diagnostics.ListingQueryEvent;
+import com.example.lazygallery.diagnostics.PasswordCheckEvent;
+import com.example.lazygallery.model.GalleryPage;
+import com.example.lazygallery.model.GallerySummary;
 import com.example.lazygallery.model.GalleryView;
 import com.example.lazygallery.persistence.document.GalleryDocument;
+import com.example.lazygallery.persistence.document.GalleryStats;
+import com.example.lazygallery.persistence.document.MediaAssetDocument;
 import com.example.lazygallery.persistence.repository.GalleryRepository;
+import com.example.lazygallery.persistence.repository.MediaAssetRepository;
+import com.example.lazygallery.util.OffsetPageRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.util.Assert;
@@ -11,12 +20,22 @@ import org.springframework.util.Assert;
 import java.security.SecureRandom;
 import java.time.Instant;
 import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class GalleryService {
 
     private final GalleryRepository galleryRepository;
+    private final MediaAssetRepository mediaAssetRepository;
+    private final ShareLookupFilter shareLookupFilter;
+    private final DocumentCache documentCache;
+    private final GalleryEventHub eventHub;
+    private final FileUrlSigner fileUrlSigner;
     private final SecureRandom secureRandom = new SecureRandom();
     private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
 
@@ -34,23 +53,77 @@ public class GalleryService {
             .shared(shared)
             .createdAt(now)
             .updatedAt(now)
+            .stats(GalleryStats.empty(now))
             .build();
 
-        return galleryRepository.save(document);
+        GalleryDocument saved = galleryRepository.save(document);
+        shareLookupFilter.gallerySharingChanged(saved.getShareSlug(), saved.isShared());
+        return saved;
     }
 
     public GalleryDocument requireOwnerGallery(String galleryId, String ownerId) {
-        return galleryRepository.findById(galleryId)
+        return documentCache.gallery(galleryId, galleryRepository::findById)
             .filter(gallery -> gallery.getOwnerId().equals(ownerId))
             .orElseThrow(() -> new IllegalArgumentException("Gallery not found"));
     }
 
+    public GalleryPage listGalleries(String ownerId, int offset, int limit, String baseUrl) {
+        Assert.hasText(ownerId, "ownerId required");
+        int safeLimit = Math.min(Math.max(limit, 1), 100);
+        int safeOffset = Math.max(offset, 0);
+
+        Sort sort = Sort.by(Sort.Direction.DESC, "createdAt").and(Sort.by(Sort.Direction.DESC, "id"));
+        ListingQueryEvent event = new ListingQueryEvent();
+        event.begin();
+        List<GalleryDocument> galleries = galleryRepository.findByOwnerId(ownerId, OffsetPageRequest.of(safeOffset, safeLimit + 1, sort));
+        boolean hasMore = galleries.size() > safeLimit;
+        if (hasMore) {
+            galleries = galleries.subList(0, safeLimit);
+        }
+
+        Map<String, MediaAssetDocument> covers = mediaAssetRepository.findLatestImages(
+                galleries.stream().map(GalleryDocument::getId).toList()).stream()
+            .collect(Collectors.toMap(MediaAssetDocument::getGalleryId, Function.identity(), (first, second) -> first));
+        event.end();
+        if (event.shouldCommit()) {
+            event.listing = "galleries";
+            event.offset = safeOffset;
+            event.limit = safeLimit;
+            event.returned = galleries.size();
+            event.commit();
+        }
+
+        List<GallerySummary> items = galleries.stream()
+            .map(gallery -> toSummary(gallery, covers.get(gallery.getId()), baseUrl))
+            .toList();
+        return GalleryPage.builder()
+            .items(items)
+            .nextOffset(hasMore ? safeOffset + items.size() : null)
+            .build();
+    }
+
     public GalleryDocument verifySharedGallery(String shareSlug, String password) {
-        GalleryDocument gallery = galleryRepository.findByShareSlug(shareSlug)
+        if (!shareLookupFilter.mightBeSharedGallery(shareSlug)) {
+            throw new IllegalArgumentException("Gallery not available");
+        }
+        GalleryDocument gallery = documentCache.galleryBySlug(shareSlug, galleryRepository::findByShareSlug)
             .filter(GalleryDocument::isShared)
-            .orElseThrow(() -> new IllegalArgumentException("Gallery not available"));
+            .orElse(null);
+        if (gallery == null) {
+            shareLookupFilter.recordGalleryMiss(shareSlug);
+            throw new IllegalArgumentException("Gallery not available");
+        }
 
-        if (!passwordEncoder.matches(password, gallery.getPasswordHash())) {
+        PasswordCheckEvent event = new PasswordCheckEvent();
+        event.begin();
+        boolean matches = passwordEncoder.matches(password, gallery.getPasswordHash());
+        event.end();
+        if (event.shouldCommit()) {
+            event.galleryId = gallery.getId();
+            event.outcome = matches ? "match" : "mismatch";
+            event.commit();
+        }
+        if (!matches) {
             throw new IllegalArgumentException("Invalid gallery password");
         }
         return gallery;
@@ -58,20 +131,81 @@ public class GalleryService {
 
     public GalleryDocument updateSharing(String galleryId, String ownerId, boolean shared) {
         GalleryDocument gallery = requireOwnerGallery(galleryId, ownerId);
-        if (shared && !gallery.isShared() && gallery.getShareSlug() == null) {
-            gallery.setShareSlug(generateShareSlug());
+        String shareSlug = gallery.getShareSlug();
+        if (shared && !gallery.isShared() && shareSlug == null) {
+            shareSlug = generateShareSlug();
         }
-        gallery.setShared(shared);
-        gallery.setUpdatedAt(Instant.now());
-        return galleryRepository.save(gallery);
+        GalleryDocument updated = galleryRepository.updateSharing(gallery.getId(), shared, shareSlug)
+            .orElseThrow(() -> new IllegalArgumentException("Gallery not found"));
+        documentCache.invalidateGallery(updated.getId());
+        if (!updated.isShared()) {
+            eventHub.closeShared(updated.getId());
+        }
+        shareLookupFilter.gallerySharingChanged(updated.getShareSlug(), updated.isShared());
+        return updated;
+    }
+
+    public void beginMediaChange(String galleryId) {
+        galleryRepository.beginMutation(galleryId);
+    }
+
+    public void cancelMediaChange(String galleryId) {
+        galleryRepository.cancelMutation(galleryId);
+    }
+
+    public void recordMediaAdded(String galleryId, String type, long bytes) {
+        galleryRepository.recordAdded(galleryId, type, bytes);
+        documentCache.invalidateGallery(galleryId);
+    }
+
+    public void recordMediaRemoved(String galleryId, String type, long bytes, boolean shared) {
+        galleryRepository.recordRemoved(galleryId, type, bytes, shared);
+        documentCache.invalidateGallery(galleryId);
+    }
+
+    public void recordSharedChange(String galleryId, int delta) {
+        galleryRepository.recordSharedChange(galleryId, delta);
+        documentCache.invalidateGallery(galleryId);
+    }
+
+    public void recordMediaChanged(String galleryId) {
+        galleryRepository.recordChanged(galleryId);
+        documentCache.invalidateGallery(galleryId);
     }
 
     public GalleryView toView(GalleryDocument document, String baseUrl) {
+        GalleryStats stats = Optional.ofNullable(document.getStats()).orElseGet(GalleryStats::new);
         return GalleryView.builder()
             .id(document.getId())
             .name(document.getName())
             .shared(document.isShared())
             .shareLink(document.isShared() ? baseUrl + "/g/" + document.getShareSlug() : null)
+            .itemCount(stats.getItemCount())
+            .totalBytes(stats.getTotalBytes())
+            .imageCount(stats.getImageCount())
+            .videoCount(stats.getVideoCount())
+            .lastModified(stats.getLastModifiedAt() != null ? stats.getLastModifiedAt().toEpochMilli() : null)
+            .build();
+    }
+
+    private GallerySummary toSummary(GalleryDocument document, MediaAssetDocument cover, String baseUrl) {
+        GalleryView view = toView(document, baseUrl);
+        String coverUrl = null;
+        if (cover != null) {
+            coverUrl = "/api/files/preview/" + fileUrlSigner.sign(FileUrlSigner.THUMBNAILS, MediaService.thumbnailKey(cover));
+        }
+        return GallerySummary.builder()
+            .id(view.getId())
+            .name(view.getName())
+            .shared(view.isShared())
+            .shareLink(view.getShareLink())
+            .itemCount(view.getItemCount())
+            .totalBytes(view.getTotalBytes())
+            .imageCount(view.getImageCount())
+            .videoCount(view.getVideoCount())
+            .lastModified(view.getLastModified())
+            .coverUrl(coverUrl)
+            .coverPlaceholder(cover != null ? cover.getPlaceholder() : null)
             .build();
     }
 
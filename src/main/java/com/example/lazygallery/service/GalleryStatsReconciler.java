@@ -0,0 +1,126 @@
+package com.example.lazygallery.service;
+
+import com.example.lazygallery.persistence.document.GalleryDocument;
+import com.example.lazygallery.persistence.document.GalleryStats;
+import com.example.lazygallery.persistence.repository.ArchiveLeaseRepository;
+import com.example.lazygallery.persistence.repository.GalleryRepository;
+import com.example.lazygallery.persistence.repository.MediaAssetRepository;
+import com.example.lazygallery.persistence.repository.MediaAssetRepositoryCustom.GalleryTotals;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Repairs drifted gallery counters. Each gallery is recomputed just before a conditional write, so an
+ * upload or delete landing in between makes the write miss and the gallery is recomputed again. Media
+ * writes announce themselves in the stats before touching the asset and settle with their counter update,
+ * so a gallery with a write in flight is left alone: its aggregate may already include a change whose
+ * increment is still to come. A marker older than {@code PENDING_STALE} belongs to a writer that died
+ * between the two steps and is cleared by the repair.
+ */
+@Component
+@RequiredArgsConstructor
+public class GalleryStatsReconciler {
+
+    private static final Logger log = LoggerFactory.getLogger(GalleryStatsReconciler.class);
+    private static final String LEASE = "stats-reconcile";
+    private static final Duration LEASE_TTL = Duration.ofMinutes(5);
+    private static final int MAX_ATTEMPTS = 3;
+    private static final Duration PENDING_STALE = Duration.ofMinutes(15);
+
+    private final GalleryRepository galleryRepository;
+    private final MediaAssetRepository mediaAssetRepository;
+    private final ArchiveLeaseRepository leaseRepository;
+    private final DocumentCache documentCache;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    @Scheduled(initialDelayString = "${app.stats.reconcile-initial-delay:PT1M}", fixedDelayString = "${app.stats.reconcile-interval:PT1H}")
+    public void reconcile() {
+        if (!leaseRepository.tryAcquire(LEASE, nodeId, LEASE_TTL)) {
+            return;
+        }
+        int[] repaired = {0};
+        long[] renewAt = {System.nanoTime() + LEASE_TTL.toNanos() / 3};
+        try {
+            galleryRepository.forEachStats(gallery -> {
+                if (System.nanoTime() - renewAt[0] >= 0) {
+                    if (!leaseRepository.renew(LEASE, nodeId, LEASE_TTL)) {
+                        throw new IllegalStateException("Lost statistics reconcile lease");
+                    }
+                    renewAt[0] = System.nanoTime() + LEASE_TTL.toNanos() / 3;
+                }
+                if (repair(gallery.getId(), gallery.getStats())) {
+                    repaired[0]++;
+                }
+            });
+        } catch (IllegalStateException ex) {
+            log.warn("Statistics reconcile stopped: {}", ex.getMessage());
+        } finally {
+            leaseRepository.release(LEASE, nodeId);
+        }
+        if (repaired[0] > 0) {
+            log.info("Reconciled statistics for {} galleries", repaired[0]);
+        }
+    }
+
+    private boolean repair(String galleryId, GalleryStats current) {
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            if (inFlight(current)) {
+                log.debug("Gallery {} has a media write in flight, leaving its statistics for the next run", galleryId);
+                return false;
+            }
+            GalleryTotals actual = mediaAssetRepository.aggregateGalleryTotals(galleryId)
+                .orElse(new GalleryTotals(galleryId, 0, 0, 0, 0, 0, 0));
+            if (matches(current, actual)) {
+                return false;
+            }
+            // A repair is a change to the listing, so lastModifiedAt moves and the listing ETag with it
+            GalleryStats expected = GalleryStats.builder()
+                .itemCount(actual.itemCount())
+                .totalBytes(actual.totalBytes())
+                .imageCount(actual.imageCount())
+                .videoCount(actual.videoCount())
+                .otherCount(actual.otherCount())
+                .sharedCount(actual.sharedCount())
+                .lastModifiedAt(Instant.now())
+                .version(current == null ? 1 : current.getVersion() + 1)
+                .build();
+            if (galleryRepository.replaceStats(galleryId, current, expected)) {
+                documentCache.invalidateGallery(galleryId);
+                return true;
+            }
+            Optional<GalleryDocument> reread = galleryRepository.findStatsById(galleryId);
+            if (reread.isEmpty()) {
+                return false;
+            }
+            current = reread.get().getStats();
+        }
+        log.debug("Gallery {} kept changing, leaving its statistics for the next run", galleryId);
+        return false;
+    }
+
+    private boolean inFlight(GalleryStats current) {
+        return current != null
+            && current.getPendingMutations() > 0
+            && current.getPendingSince() != null
+            && current.getPendingSince().isAfter(Instant.now().minus(PENDING_STALE));
+    }
+
+    private boolean matches(GalleryStats current, GalleryTotals actual) {
+        return current != null
+            && current.getPendingMutations() == 0
+            && current.getItemCount() == actual.itemCount()
+            && current.getTotalBytes() == actual.totalBytes()
+            && current.getImageCount() == actual.imageCount()
+            && current.getVideoCount() == actual.videoCount()
+            && current.getOtherCount() == actual.otherCount()
+            && current.getSharedCount() == actual.sharedCount();
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.lazygallery.service;
+
+import com.drew.imaging.ImageMetadataReader;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.exif.ExifIFD0Directory;
+import com.drew.metadata.exif.ExifSubIFDDirectory;
+import lombok.RequiredArgsConstructor;
+import net.coobird.thumbnailator.Thumbnails;
+import net.coobird.thumbnailator.util.exif.ExifFilterUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.TimeZone;
+
+@Component
+@RequiredArgsConstructor
+public class ImageMetadataExtractor {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageMetadataExtractor.class);
+    private static final int PLACEHOLDER_SIZE = 16;
+    private static final double PLACEHOLDER_QUALITY = 0.5;
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    private final ThumbnailDecoder decoder;
+
+    /**
+     * Extracts layout metadata from an uploaded image. Width and height are reported as displayed,
+     * i.e. already swapped for EXIF orientations that rotate the image by 90 degrees. The placeholder
+     * is derived from the thumbnail when available so the original is not decoded a second time.
+     */
+    public ImageMetadata describe(byte[] original, byte[] thumbnail) {
+        Integer orientation = null;
+        Instant capturedAt = null;
+        try {
+            Metadata metadata = ImageMetadataReader.readMetadata(new ByteArrayInputStream(original));
+            ExifIFD0Directory ifd0 = metadata.getFirstDirectoryOfType(ExifIFD0Directory.class);
+            if (ifd0 != null && ifd0.containsTag(ExifIFD0Directory.TAG_ORIENTATION)) {
+                orientation = ifd0.getInteger(ExifIFD0Directory.TAG_ORIENTATION);
+            }
+            ExifSubIFDDirectory exif = metadata.getFirstDirectoryOfType(ExifSubIFDDirectory.class);
+            if (exif != null) {
+                // Uses OffsetTimeOriginal when the camera wrote one; otherwise the local clock time is taken as UTC
+                // so the result does not depend on the server's default time zone
+                Date taken = exif.getDateOriginal(UTC);
+                if (taken != null) {
+                    capturedAt = taken.toInstant();
+                }
+            }
+        } catch (Exception ex) {
+            log.debug("No EXIF metadata available: {}", ex.getMessage());
+        }
+
+        Integer width = null;
+        Integer height = null;
+        int[] dimensions = readDimensions(original);
+        if (dimensions != null) {
+            boolean rotated = orientation != null && orientation >= 5 && orientation <= 8;
+            width = rotated ? dimensions[1] : dimensions[0];
+            height = rotated ? dimensions[0] : dimensions[1];
+        }
+
+        String placeholder = buildPlaceholder(thumbnail != null ? thumbnail : original);
+        return new ImageMetadata(width, height, orientation, capturedAt, placeholder);
+    }
+
+    private int[] readDimensions(byte[] data) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+            if (input == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                return new int[]{reader.getWidth(0), reader.getHeight(0)};
+            } finally {
+                reader.dispose();
+            }
+        } catch (Exception ex) {
+            log.debug("Unable to read image dimensions: {}", ex.getMessage());
+            return null;
+        }
+    }
+
+    private String buildPlaceholder(byte[] data) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (ThumbnailDecoder.DecodedImage decoded = decoder.decode(data, PLACEHOLDER_SIZE, PLACEHOLDER_SIZE)) {
+                Thumbnails.Builder<BufferedImage> builder = Thumbnails.of(decoded.image())
+                    .size(PLACEHOLDER_SIZE, PLACEHOLDER_SIZE)
+                    .outputQuality(PLACEHOLDER_QUALITY)
+                    .outputFormat("jpg");
+                if (decoded.orientation() != null) {
+                    builder.addFilter(ExifFilterUtils.getFilterForOrientation(decoded.orientation()));
+                }
+                builder.toOutputStream(out);
+            }
+            return "data:image/jpeg;base64," + Base64.getEncoder().encodeToString(out.toByteArray());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception ex) {
+            log.debug("Unable to build placeholder: {}", ex.getMessage());
+            return null;
+        }
+    }
+
+    public record ImageMetadata(Integer width, Integer height, Integer orientation, Instant capturedAt, String placeholder) {
+    }
+}
@@ -1,26 +1,37 @@
 package com.example.lazygallery.service;
 
+import com.example.lazygallery.config.SigningProperties;
 import com.example.lazygallery.config.StorageProperties;
+import com.example.lazygallery.diagnostics.ListingQueryEvent;
+import com.example.lazygallery.diagnostics.ThumbnailEncodeEvent;
+import com.example.lazygallery.diagnostics.UploadEvent;
+import com.example.lazygallery.model.MediaFilter;
 import com.example.lazygallery.model.MediaItem;
 import com.example.lazygallery.model.MediaPage;
+import com.example.lazygallery.persistence.document.ArchiveDocument;
 import com.example.lazygallery.persistence.document.GalleryDocument;
+import com.example.lazygallery.persistence.document.GalleryStats;
 import com.example.lazygallery.persistence.document.MediaAssetDocument;
+import com.example.lazygallery.persistence.document.SupersededThumbnailDocument;
 import com.example.lazygallery.persistence.repository.MediaAssetRepository;
+import com.example.lazygallery.persistence.repository.SupersededThumbnailRepository;
+import com.example.lazygallery.service.GalleryEventHub.GalleryEvent;
+import com.example.lazygallery.service.ThumbnailCache.CachedThumbnail;
+import com.example.lazygallery.storage.ObjectStorage;
+import com.example.lazygallery.storage.ObjectStorage.StoredObject;
 import com.example.lazygallery.util.IdCodec;
-import io.minio.GetObjectArgs;
-import io.minio.MinioClient;
-import io.minio.PutObjectArgs;
-import io.minio.RemoveObjectArgs;
-import io.minio.StatObjectArgs;
-import io.minio.StatObjectResponse;
+import com.example.lazygallery.util.MediaTypes;
 import lombok.RequiredArgsConstructor;
 import net.coobird.thumbnailator.Thumbnails;
+import net.coobird.thumbnailator.util.exif.ExifFilterUtils;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.core.io.InputStreamResource;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -28,26 +39,48 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.security.SecureRandom;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Base64;
-import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -57,26 +90,83 @@ public class MediaService {
     private static final String GALLERIES_PREFIX = "galleries/";
     private static final String ORIGINALS_FOLDER = "originals/";
     private static final String THUMBNAILS_FOLDER = "thumbnails/";
-    private static final String ARCHIVES_FOLDER = "archives/";
+    private static final int MAX_PREVIEW_BATCH = 100;
+    private static final int SWEEP_BATCH_SIZE = 200;
+    private static final int PREVIEW_FETCH_THREADS = 16;
+    private static final int PREVIEW_FETCH_QUEUE = 256;
+    private static final int PREVIEW_FETCHES_PER_REQUEST = 4;
 
-    private final MinioClient client;
+    private final ObjectStorage storage;
     private final StorageProperties props;
     private final MediaAssetRepository mediaAssetRepository;
     private final GalleryService galleryService;
+    private final ImageMetadataExtractor metadataExtractor;
+    private final ThumbnailDecoder thumbnailDecoder;
+    private final ShareLookupFilter shareLookupFilter;
+    private final FileUrlSigner fileUrlSigner;
+    private final SigningProperties signingProperties;
+    private final SupersededThumbnailRepository supersededThumbnailRepository;
+    private final ThumbnailCache thumbnailCache;
+    private final ArchiveService archiveService;
+    private final DocumentCache documentCache;
+    private final GalleryEventHub eventHub;
     private final SecureRandom secureRandom = new SecureRandom();
+    private final ExecutorService previewExecutor = newPreviewExecutor();
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void assignMissingTypes() {
+        long updated = mediaAssetRepository.assignMissingTypes();
+        if (updated > 0) {
+            documentCache.invalidateAll();
+            log.info("Assigned media type to {} legacy assets", updated);
+        }
+    }
 
     public MediaPage listMediaForOwner(String galleryId, String ownerId, int offset, int limit) {
+        return listMediaForOwner(galleryId, ownerId, MediaFilter.none(), offset, limit);
+    }
+
+    public MediaPage listMediaForOwner(String galleryId, String ownerId, MediaFilter filter, int offset, int limit) {
+        return listMediaForOwner(galleryId, ownerId, filter, offset, limit, etag -> false);
+    }
+
+    /**
+     * Returns null without querying the page when {@code notModified} accepts its ETag.
+     */
+    public MediaPage listMediaForOwner(String galleryId, String ownerId, MediaFilter filter, int offset, int limit,
+                                       Predicate<String> notModified) {
         GalleryDocument gallery = galleryService.requireOwnerGallery(galleryId, ownerId);
-        PagedResult result = fetchMedia(gallery.getId(), offset, limit, false);
+        String etag = listingTag(gallery, filter, offset, limit, false);
+        if (etag != null && notModified.test(etag)) {
+            return null;
+        }
+        PagedResult result = fetchMedia(gallery, filter, offset, limit, false);
         return toMediaPage(result, gallery, true);
     }
 
     public MediaPage listSharedMedia(String shareSlug, String password, int offset, int limit) {
+        return listSharedMedia(shareSlug, password, MediaFilter.none(), offset, limit);
+    }
+
+    public MediaPage listSharedMedia(String shareSlug, String password, MediaFilter filter, int offset, int limit) {
+        return listSharedMedia(shareSlug, password, filter, offset, limit, etag -> false);
+    }
+
+    /**
+     * Returns null without querying the page when {@code notModified} accepts its ETag.
+     */
+    public MediaPage listSharedMedia(String shareSlug, String password, MediaFilter filter, int offset, int limit,
+                                     Predicate<String> notModified) {
         GalleryDocument gallery = galleryService.verifySharedGallery(shareSlug, password);
         if (!gallery.isShared()) {
             throw new IllegalArgumentException("Gallery is not shared");
         }
-        PagedResult result = fetchMedia(gallery.getId(), offset, limit, true);
+        String etag = listingTag(gallery, filter, offset, limit, true);
+        if (etag != null && notModified.test(etag)) {
+            return null;
+        }
+        PagedResult result = fetchMedia(gallery, filter, offset, limit, true);
         return toMediaPage(result, gallery, false);
     }
 
@@ -92,64 +182,105 @@ public class MediaService {
                 continue;
             }
 
-            byte[] data = file.getBytes();
-            String storageName = generateObjectName(file.getOriginalFilename());
-            String objectName = galleryOriginalKey(gallery.getId(), storageName);
-            String contentType = resolveContentType(file);
-
-            client.putObject(PutObjectArgs.builder()
-                .bucket(props.getBucketMedia())
-                .object(objectName)
-                .stream(new ByteArrayInputStream(data), data.length, -1)
-                .contentType(contentType)
-                .userMetadata(Map.of(
-                    "original-name", Optional.ofNullable(file.getOriginalFilename()).orElse(storageName),
-                    "uploaded-at", Long.toString(System.currentTimeMillis())
-                ))
-                .build());
-
-            if (contentType.startsWith("image/")) {
-                createThumbnail(gallery.getId(), storageName, data);
+            UploadEvent event = new UploadEvent();
+            event.begin();
+            String outcome = "ok";
+            try {
+                stored.add(storeUpload(gallery, ownerId, file));
+            } catch (Exception ex) {
+                outcome = ex.getClass().getSimpleName();
+                throw ex;
+            } finally {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.galleryId = gallery.getId();
+                    event.contentType = file.getContentType();
+                    event.bytes = file.getSize();
+                    event.outcome = outcome;
+                    event.commit();
+                }
             }
+        }
 
-            MediaAssetDocument document = MediaAssetDocument.builder()
-                .galleryId(gallery.getId())
-                .ownerId(ownerId)
-                .objectKey(objectName)
-                .storageName(storageName)
-                .originalName(Optional.ofNullable(file.getOriginalFilename()).orElse(storageName))
-                .mimeType(contentType)
-                .size(file.getSize())
-                .uploadedAt(Instant.now())
-                .shared(false)
-                .build();
+        return stored;
+    }
 
-            MediaAssetDocument saved = mediaAssetRepository.save(document);
-            stored.add(IdCodec.encode(saved.getId()));
+    private String storeUpload(GalleryDocument gallery, String ownerId, MultipartFile file) throws Exception {
+        byte[] data = file.getBytes();
+        String storageName = generateObjectName(file.getOriginalFilename());
+        String objectName = galleryOriginalKey(gallery.getId(), storageName);
+        String contentType = resolveContentType(file);
+
+        storage.put(props.getBucketMedia(), objectName, new ByteArrayInputStream(data), data.length, contentType, Map.of(
+            "original-name", Optional.ofNullable(file.getOriginalFilename()).orElse(storageName),
+            "uploaded-at", Long.toString(System.currentTimeMillis())
+        ));
+
+        ImageMetadataExtractor.ImageMetadata metadata = null;
+        String thumbnailProfile = null;
+        if (contentType.startsWith("image/")) {
+            String profile = currentThumbnailProfile();
+            byte[] thumbnail = createThumbnail(gallery.getId(), storageName, profile, data);
+            if (thumbnail != null) {
+                thumbnailProfile = profile;
+            }
+            metadata = metadataExtractor.describe(data, thumbnail);
         }
 
-        return stored;
+        MediaAssetDocument.MediaAssetDocumentBuilder builder = MediaAssetDocument.builder()
+            .galleryId(gallery.getId())
+            .ownerId(ownerId)
+            .objectKey(objectName)
+            .storageName(storageName)
+            .originalName(Optional.ofNullable(file.getOriginalFilename()).orElse(storageName))
+            .mimeType(contentType)
+            .type(detectType(contentType))
+            .size(file.getSize())
+            .uploadedAt(Instant.now())
+            .thumbnailProfile(thumbnailProfile)
+            .shared(false);
+        if (metadata != null) {
+            builder.width(metadata.width())
+                .height(metadata.height())
+                .orientation(metadata.orientation())
+                .capturedAt(metadata.capturedAt())
+                .placeholder(metadata.placeholder());
+        }
+
+        // Announced before the insert, so a reconcile that already counts the asset cannot also see old stats
+        galleryService.beginMediaChange(gallery.getId());
+        MediaAssetDocument saved;
+        try {
+            saved = mediaAssetRepository.save(builder.build());
+        } catch (RuntimeException ex) {
+            galleryService.cancelMediaChange(gallery.getId());
+            throw ex;
+        }
+        galleryService.recordMediaAdded(gallery.getId(), saved.getType(), saved.getSize());
+        // New uploads start private, so only the owner feed hears about them
+        eventHub.publish(gallery.getId(), new GalleryEvent(GalleryEventHub.UPLOAD, toMediaItem(saved, gallery, true)), null);
+        return IdCodec.encode(saved.getId());
     }
 
     public void deleteMedia(String galleryId, String ownerId, String encodedId) throws Exception {
         GalleryDocument gallery = galleryService.requireOwnerGallery(galleryId, ownerId);
         MediaAssetDocument document = resolveOwnedMedia(encodedId, gallery.getId());
 
-        mediaAssetRepository.deleteById(document.getId());
-
-        client.removeObject(RemoveObjectArgs.builder()
-            .bucket(props.getBucketMedia())
-            .object(document.getObjectKey())
-            .build());
-
+        galleryService.beginMediaChange(gallery.getId());
         try {
-            client.removeObject(RemoveObjectArgs.builder()
-                .bucket(props.getBucketThumbnails())
-                .object(galleryThumbnailKey(gallery.getId(), document.getStorageName()))
-                .build());
-        } catch (Exception ex) {
-            log.debug("No thumbnail to delete for {}", document.getStorageName());
+            mediaAssetRepository.deleteById(document.getId());
+        } catch (RuntimeException ex) {
+            galleryService.cancelMediaChange(gallery.getId());
+            throw ex;
         }
+        documentCache.invalidateMedia(document.getId());
+        galleryService.recordMediaRemoved(gallery.getId(), detectType(document.getMimeType()), document.getSize(), document.isShared());
+        GalleryEvent removed = new GalleryEvent(GalleryEventHub.DELETE, toRemovedItem(document));
+        eventHub.publish(gallery.getId(), removed, document.isShared() ? removed : null);
+
+        storage.remove(props.getBucketMedia(), document.getObjectKey());
+
+        removeThumbnail(thumbnailKey(document));
     }
 
     public MediaAssetDocument updateMediaSharing(String galleryId, String ownerId, String encodedId, boolean shared) {
@@ -158,21 +289,50 @@ public class MediaService {
             throw new IllegalArgumentException("Enable gallery sharing before sharing files");
         }
         MediaAssetDocument document = resolveOwnedMedia(encodedId, gallery.getId());
+        // Detach the instance from the cache before mutating it, readers must not see unsaved state
+        documentCache.invalidateMedia(document.getId());
+        boolean wasShared = document.isShared();
         document.setShared(shared);
+        if (shared && !wasShared) {
+            document.setSharedAt(Instant.now());
+        }
         if (shared && document.getShareSlug() == null) {
             document.setShareSlug(generateShareSlug());
         }
         if (!shared) {
             document.setShareSlug(null);
         }
-        return mediaAssetRepository.save(document);
+        if (wasShared != shared) {
+            galleryService.beginMediaChange(gallery.getId());
+        }
+        MediaAssetDocument saved;
+        try {
+            saved = mediaAssetRepository.save(document);
+        } catch (RuntimeException ex) {
+            if (wasShared != shared) {
+                galleryService.cancelMediaChange(gallery.getId());
+            }
+            throw ex;
+        }
+        documentCache.invalidateMedia(saved.getId());
+        shareLookupFilter.mediaSharingChanged(saved.getId(), shared);
+        if (wasShared != shared) {
+            galleryService.recordSharedChange(gallery.getId(), shared ? 1 : -1);
+        }
+        GalleryEvent sharedEvent = null;
+        if (shared && !wasShared) {
+            sharedEvent = new GalleryEvent(GalleryEventHub.UPLOAD, toMediaItem(saved, gallery, false));
+        } else if (!shared && wasShared) {
+            sharedEvent = new GalleryEvent(GalleryEventHub.DELETE, toRemovedItem(saved));
+        }
+        eventHub.publish(gallery.getId(), new GalleryEvent(GalleryEventHub.SHARING, toMediaItem(saved, gallery, true)), sharedEvent);
+        return saved;
     }
 
     public ResponseEntity<InputStreamResource> downloadArchive(String galleryId, String ownerId, String ifNoneMatch) throws Exception {
         GalleryDocument gallery = galleryService.requireOwnerGallery(galleryId, ownerId);
-        List<MediaAssetDocument> inventory = new ArrayList<>(mediaAssetRepository.findByGalleryIdOrderByUploadedAtDesc(gallery.getId()));
-        inventory.sort(Comparator.comparing(MediaAssetDocument::getUploadedAt).reversed());
-        String signature = computeSignature(inventory);
+        List<MediaAssetDocument> inventory = archiveService.loadInventory(gallery.getId());
+        String signature = archiveService.computeSignature(inventory);
         String etag = '"' + signature + '"';
 
         if (Objects.equals(etag, ifNoneMatch)) {
@@ -182,29 +342,29 @@ public class MediaService {
                 .build();
         }
 
-        String archiveObject = galleryArchiveKey(gallery.getId(), signature);
-        ensureArchiveExists(archiveObject, inventory);
-
-        StatObjectResponse stat = client.statObject(StatObjectArgs.builder()
-            .bucket(props.getBucketArchives())
-            .object(archiveObject)
-            .build());
-
-        InputStream stream = client.getObject(GetObjectArgs.builder()
-            .bucket(props.getBucketArchives())
-            .object(archiveObject)
-            .build());
+        ArchiveDocument archive = archiveService.ensureArchive(gallery.getId(), inventory, signature);
+        InputStream stream = archiveService.openArchive(archive);
 
         return ResponseEntity.ok()
             .header(HttpHeaders.ETAG, etag)
             .header(HttpHeaders.CACHE_CONTROL, "public, max-age=0, must-revalidate")
             .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"gallery-" + gallery.getName().replace(' ', '_') + "-" + signature.substring(0, 8) + ".zip\"")
             .contentType(MediaType.APPLICATION_OCTET_STREAM)
-            .contentLength(stat.size())
+            .contentLength(archive.getSize())
             .body(new InputStreamResource(stream));
     }
 
-    public StatObjectResponse statOriginalForOwner(String galleryId, String ownerId, String encodedId) throws Exception {
+    public SseEmitter subscribeForOwner(String galleryId, String ownerId) {
+        GalleryDocument gallery = galleryService.requireOwnerGallery(galleryId, ownerId);
+        return eventHub.subscribe(gallery.getId(), false);
+    }
+
+    public SseEmitter subscribeShared(String shareSlug, String password) {
+        GalleryDocument gallery = galleryService.verifySharedGallery(shareSlug, password);
+        return eventHub.subscribe(gallery.getId(), true);
+    }
+
+    public StoredObject statOriginalForOwner(String galleryId, String ownerId, String encodedId) throws Exception {
         GalleryDocument gallery = galleryService.requireOwnerGallery(galleryId, ownerId);
         MediaAssetDocument document = resolveOwnedMedia(encodedId, gallery.getId());
         return statObject(props.getBucketMedia(), document.getObjectKey());
@@ -216,55 +376,137 @@ public class MediaService {
         return openObject(props.getBucketMedia(), document.getObjectKey());
     }
 
-    public StatObjectResponse statThumbnailForOwner(String galleryId, String ownerId, String encodedId) throws Exception {
+    public CachedThumbnail thumbnailForOwner(String galleryId, String ownerId, String encodedId) throws Exception {
         GalleryDocument gallery = galleryService.requireOwnerGallery(galleryId, ownerId);
         MediaAssetDocument document = resolveOwnedMedia(encodedId, gallery.getId());
-        return statObject(props.getBucketThumbnails(), galleryThumbnailKey(gallery.getId(), document.getStorageName()));
+        return loadThumbnail(thumbnailKey(document));
     }
 
-    public InputStream openThumbnailForOwner(String galleryId, String ownerId, String encodedId) throws Exception {
+    public List<ThumbnailRef> thumbnailsForOwner(String galleryId, String ownerId, List<String> encodedIds) {
         GalleryDocument gallery = galleryService.requireOwnerGallery(galleryId, ownerId);
-        MediaAssetDocument document = resolveOwnedMedia(encodedId, gallery.getId());
-        return openObject(props.getBucketThumbnails(), galleryThumbnailKey(gallery.getId(), document.getStorageName()));
+        return resolveThumbnails(gallery, encodedIds, false);
     }
 
-    public StatObjectResponse statOriginalShared(String shareSlug, String password, String encodedId) throws Exception {
+    public List<ThumbnailRef> thumbnailsShared(String shareSlug, String password, List<String> encodedIds) {
         GalleryDocument gallery = galleryService.verifySharedGallery(shareSlug, password);
-        MediaAssetDocument document = resolveSharedMedia(encodedId, gallery);
-        return statObject(props.getBucketMedia(), document.getObjectKey());
+        return resolveThumbnails(gallery, encodedIds, true);
     }
 
-    public InputStream openOriginalShared(String shareSlug, String password, String encodedId) throws Exception {
+    public List<ThumbnailRef> thumbnailsSigned(List<String> tokens) {
+        if (tokens == null || tokens.isEmpty()) {
+            return List.of();
+        }
+        if (tokens.size() > MAX_PREVIEW_BATCH) {
+            throw new IllegalArgumentException("At most " + MAX_PREVIEW_BATCH + " previews per request");
+        }
+        List<ThumbnailRef> refs = new ArrayList<>();
+        for (String token : tokens.stream().distinct().toList()) {
+            try {
+                refs.add(new ThumbnailRef(token, fileUrlSigner.verify(token, FileUrlSigner.THUMBNAILS).objectKey()));
+            } catch (IllegalArgumentException ex) {
+                // Left out of the bundle; the client falls back to the individual URL and sees the error there
+            }
+        }
+        return refs;
+    }
+
+    public StoredObject statSignedOriginal(String token) throws Exception {
+        return statObject(props.getBucketMedia(), fileUrlSigner.verify(token, FileUrlSigner.MEDIA).objectKey());
+    }
+
+    public InputStream openSignedOriginal(String token) throws Exception {
+        return openObject(props.getBucketMedia(), fileUrlSigner.verify(token, FileUrlSigner.MEDIA).objectKey());
+    }
+
+    public CachedThumbnail thumbnailSigned(String token) throws Exception {
+        return loadThumbnail(fileUrlSigner.verify(token, FileUrlSigner.THUMBNAILS).objectKey());
+    }
+
+    public void writeThumbnailBundle(List<ThumbnailRef> refs, OutputStream out) throws IOException {
+        CompletionService<BundledThumbnail> completion = new ExecutorCompletionService<>(previewExecutor);
+        List<Future<BundledThumbnail>> pending = new ArrayList<>();
+        Iterator<ThumbnailRef> remaining = refs.iterator();
+        try {
+            // A few loads per request at a time, so one large bundle cannot take over the shared pool
+            while (pending.size() < PREVIEW_FETCHES_PER_REQUEST && remaining.hasNext()) {
+                pending.add(completion.submit(bundleLoad(remaining.next())));
+            }
+
+            // Records are written in completion order: u16 id length, id, u32 payload length (0 = missing), payload
+            DataOutputStream data = new DataOutputStream(out);
+            for (int i = 0; i < refs.size(); i++) {
+                Future<BundledThumbnail> done = completion.take();
+                pending.remove(done);
+                if (remaining.hasNext()) {
+                    pending.add(completion.submit(bundleLoad(remaining.next())));
+                }
+                BundledThumbnail next = done.get();
+                byte[] id = next.encodedId().getBytes(StandardCharsets.UTF_8);
+                data.writeShort(id.length);
+                data.write(id);
+                if (next.bytes() == null) {
+                    data.writeInt(0);
+                } else {
+                    data.writeInt(next.bytes().length);
+                    data.write(next.bytes());
+                }
+                data.flush();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while bundling previews", ex);
+        } catch (ExecutionException ex) {
+            throw new IOException("Unable to bundle previews", ex.getCause());
+        } finally {
+            // Nothing left to wait for after a client abort; stop loads that have not finished
+            pending.forEach(future -> future.cancel(true));
+        }
+    }
+
+    private Callable<BundledThumbnail> bundleLoad(ThumbnailRef ref) {
+        return () -> {
+            try {
+                CachedThumbnail thumbnail = loadThumbnail(ref.objectKey());
+                // Read disk entries here: cache eviction may delete the file before the writer gets to it
+                byte[] bytes = thumbnail.bytes() != null ? thumbnail.bytes() : Files.readAllBytes(thumbnail.file());
+                return new BundledThumbnail(ref.encodedId(), bytes);
+            } catch (Exception ex) {
+                log.debug("Unable to load thumbnail {} for bundle: {}", ref.objectKey(), ex.getMessage());
+                return new BundledThumbnail(ref.encodedId(), null);
+            }
+        };
+    }
+
+    public StoredObject statOriginalShared(String shareSlug, String password, String encodedId) throws Exception {
         GalleryDocument gallery = galleryService.verifySharedGallery(shareSlug, password);
         MediaAssetDocument document = resolveSharedMedia(encodedId, gallery);
-        return openObject(props.getBucketMedia(), document.getObjectKey());
+        return statObject(props.getBucketMedia(), document.getObjectKey());
     }
 
-    public StatObjectResponse statThumbnailShared(String shareSlug, String password, String encodedId) throws Exception {
+    public InputStream openOriginalShared(String shareSlug, String password, String encodedId) throws Exception {
         GalleryDocument gallery = galleryService.verifySharedGallery(shareSlug, password);
         MediaAssetDocument document = resolveSharedMedia(encodedId, gallery);
-        return statObject(props.getBucketThumbnails(), galleryThumbnailKey(gallery.getId(), document.getStorageName()));
+        return openObject(props.getBucketMedia(), document.getObjectKey());
     }
 
-    public InputStream openThumbnailShared(String shareSlug, String password, String encodedId) throws Exception {
+    public CachedThumbnail thumbnailShared(String shareSlug, String password, String encodedId) throws Exception {
         GalleryDocument gallery = galleryService.verifySharedGallery(shareSlug, password);
         MediaAssetDocument document = resolveSharedMedia(encodedId, gallery);
-        return openObject(props.getBucketThumbnails(), galleryThumbnailKey(gallery.getId(), document.getStorageName()));
+        return loadThumbnail(thumbnailKey(document));
     }
 
-    private PagedResult fetchMedia(String galleryId, int offset, int limit, boolean sharedOnly) {
+    private PagedResult fetchMedia(GalleryDocument gallery, MediaFilter filter, int offset, int limit, boolean sharedOnly) {
         int safeLimit = Math.min(Math.max(limit, 1), 200);
         int safeOffset = Math.max(offset, 0);
         int pageNumber = safeOffset / safeLimit;
         int localSkip = safeOffset % safeLimit;
 
-        Sort sort = Sort.by(Sort.Direction.DESC, "uploadedAt");
+        Sort sort = Sort.by(filter.getDirection(), filter.getSort().getField())
+            .and(Sort.by(filter.getDirection(), "id"));
         Pageable pageable = PageRequest.of(pageNumber, safeLimit, sort);
-        Page<MediaAssetDocument> page = sharedOnly
-            ? mediaAssetRepository.findByGalleryIdAndSharedTrueOrderByUploadedAtDesc(galleryId, pageable)
-            : mediaAssetRepository.findByGalleryIdOrderByUploadedAtDesc(galleryId, pageable);
-
-        List<MediaAssetDocument> content = page.getContent();
+        ListingQueryEvent event = new ListingQueryEvent();
+        event.begin();
+        List<MediaAssetDocument> content = mediaAssetRepository.search(gallery.getId(), sharedOnly, filter, pageable);
         if (localSkip > 0 && content.size() > localSkip) {
             content = content.subList(localSkip, content.size());
         } else if (localSkip > 0) {
@@ -274,8 +516,18 @@ public class MediaService {
             content = content.subList(0, safeLimit);
         }
 
-        long total = page.getTotalElements();
+        long total = countMedia(gallery, filter, sharedOnly);
         int returned = content.size();
+        event.end();
+        if (event.shouldCommit()) {
+            event.listing = sharedOnly ? "shared-media" : "media";
+            event.galleryId = gallery.getId();
+            event.offset = safeOffset;
+            event.limit = safeLimit;
+            event.returned = returned;
+            event.filtered = !filter.isUnfiltered();
+            event.commit();
+        }
         Integer nextOffset = null;
         if (safeOffset + returned < total) {
             nextOffset = safeOffset + returned;
@@ -283,6 +535,26 @@ public class MediaService {
         return new PagedResult(content, total, nextOffset);
     }
 
+    private String listingTag(GalleryDocument gallery, MediaFilter filter, int offset, int limit, boolean sharedOnly) {
+        GalleryStats stats = gallery.getStats();
+        if (stats == null || stats.getLastModifiedAt() == null) {
+            return null;
+        }
+        // Media writes bump stats.lastModifiedAt, gallery sharing bumps updatedAt, and signed links roll per expiry bucket
+        String version = String.join("|", gallery.getId(), String.valueOf(gallery.getUpdatedAt()),
+            stats.getLastModifiedAt().toString(), filter.toString(), Integer.toString(offset), Integer.toString(limit),
+            Boolean.toString(sharedOnly), Long.toString(fileUrlSigner.currentExpiry()));
+        return "\"" + DigestUtils.sha1Hex(version) + "\"";
+    }
+
+    private long countMedia(GalleryDocument gallery, MediaFilter filter, boolean sharedOnly) {
+        GalleryStats stats = gallery.getStats();
+        if (filter.isUnfiltered() && stats != null) {
+            return sharedOnly ? stats.getSharedCount() : stats.getItemCount();
+        }
+        return mediaAssetRepository.countMatching(gallery.getId(), sharedOnly, filter);
+    }
+
     private MediaPage toMediaPage(PagedResult paged, GalleryDocument gallery, boolean ownerContext) {
         List<MediaItem> items = paged.documents().stream()
             .map(doc -> toMediaItem(doc, gallery, ownerContext))
@@ -297,18 +569,11 @@ public class MediaService {
     private MediaItem toMediaItem(MediaAssetDocument doc, GalleryDocument gallery, boolean ownerContext) {
         String encodedId = IdCodec.encode(doc.getId());
         String type = detectType(doc.getMimeType());
-        String originalUrl;
+        // The listing already authorized the caller, so file URLs carry that decision as a signed capability
+        String originalUrl = "/api/files/original/" + fileUrlSigner.sign(FileUrlSigner.MEDIA, doc.getObjectKey());
         String previewUrl = null;
-        if (ownerContext) {
-            originalUrl = "/api/galleries/" + gallery.getId() + "/files/original/" + encodedId;
-            if ("image".equals(type)) {
-                previewUrl = "/api/galleries/" + gallery.getId() + "/files/preview/" + encodedId;
-            }
-        } else {
-            originalUrl = "/api/shared/" + gallery.getShareSlug() + "/files/original/" + encodedId;
-            if ("image".equals(type)) {
-                previewUrl = "/api/shared/" + gallery.getShareSlug() + "/files/preview/" + encodedId;
-            }
+        if ("image".equals(type)) {
+            previewUrl = "/api/files/preview/" + fileUrlSigner.sign(FileUrlSigner.THUMBNAILS, thumbnailKey(doc));
         }
 
         String shareLink = null;
@@ -324,6 +589,11 @@ public class MediaService {
             .mime(doc.getMimeType())
             .size(doc.getSize())
             .mtime(doc.getUploadedAt().toEpochMilli())
+            .width(doc.getWidth())
+            .height(doc.getHeight())
+            .orientation(doc.getOrientation())
+            .capturedAt(doc.getCapturedAt() != null ? doc.getCapturedAt().toEpochMilli() : null)
+            .placeholder(doc.getPlaceholder())
             .shared(doc.isShared())
             .shareLink(shareLink)
             .originalUrl(originalUrl)
@@ -331,106 +601,212 @@ public class MediaService {
             .build();
     }
 
+    // Removal deltas only identify the item, they must not hand out URLs for something that is no longer visible
+    private MediaItem toRemovedItem(MediaAssetDocument doc) {
+        return MediaItem.builder()
+            .id(IdCodec.encode(doc.getId()))
+            .galleryId(doc.getGalleryId())
+            .name(doc.getOriginalName())
+            .type(detectType(doc.getMimeType()))
+            .mime(doc.getMimeType())
+            .size(doc.getSize())
+            .mtime(doc.getUploadedAt().toEpochMilli())
+            .build();
+    }
+
+    private List<ThumbnailRef> resolveThumbnails(GalleryDocument gallery, List<String> encodedIds, boolean sharedOnly) {
+        if (encodedIds == null || encodedIds.isEmpty()) {
+            return List.of();
+        }
+        if (encodedIds.size() > MAX_PREVIEW_BATCH) {
+            throw new IllegalArgumentException("At most " + MAX_PREVIEW_BATCH + " previews per request");
+        }
+        Map<String, String> encodedByMediaId = encodedIds.stream()
+            .distinct()
+            .collect(Collectors.toMap(IdCodec::decode, Function.identity(), (first, second) -> first, HashMap::new));
+        if (sharedOnly) {
+            encodedByMediaId.keySet().removeIf(mediaId -> !shareLookupFilter.mightBeSharedMedia(mediaId));
+        }
+
+        List<ThumbnailRef> refs = new ArrayList<>();
+        Set<String> unresolved = new HashSet<>(encodedByMediaId.keySet());
+        for (MediaAssetDocument doc : mediaAssetRepository.findAllById(encodedByMediaId.keySet())) {
+            if (sharedOnly && !doc.isShared()) {
+                continue;
+            }
+            unresolved.remove(doc.getId());
+            if (!Objects.equals(doc.getGalleryId(), gallery.getId())) {
+                continue;
+            }
+            if (!MediaTypes.IMAGE.equals(detectType(doc.getMimeType()))) {
+                continue;
+            }
+            refs.add(new ThumbnailRef(encodedByMediaId.get(doc.getId()), thumbnailKey(doc)));
+        }
+        if (sharedOnly) {
+            unresolved.forEach(shareLookupFilter::recordMediaMiss);
+        }
+        return refs;
+    }
+
     private MediaAssetDocument resolveOwnedMedia(String encodedId, String galleryId) {
         String mediaId = IdCodec.decode(encodedId);
-        return mediaAssetRepository.findById(mediaId)
+        return documentCache.media(mediaId, mediaAssetRepository::findById)
             .filter(doc -> Objects.equals(doc.getGalleryId(), galleryId))
             .orElseThrow(() -> new IllegalArgumentException("Media not found"));
     }
 
     private MediaAssetDocument resolveSharedMedia(String encodedId, GalleryDocument gallery) {
         String mediaId = IdCodec.decode(encodedId);
-        return mediaAssetRepository.findById(mediaId)
+        if (!shareLookupFilter.mightBeSharedMedia(mediaId)) {
+            throw new IllegalArgumentException("Media not available");
+        }
+        MediaAssetDocument document = documentCache.media(mediaId, mediaAssetRepository::findById)
             .filter(MediaAssetDocument::isShared)
-            .filter(doc -> Objects.equals(doc.getGalleryId(), gallery.getId()))
-            .orElseThrow(() -> new IllegalArgumentException("Media not available"));
-    }
-
-    private void ensureArchiveExists(String objectName, List<MediaAssetDocument> inventory) throws Exception {
-        try {
-            client.statObject(StatObjectArgs.builder()
-                .bucket(props.getBucketArchives())
-                .object(objectName)
-                .build());
-            return;
-        } catch (Exception ex) {
-            log.info("Archive {} missing, generating new version", objectName);
-        }
-
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        try (ZipOutputStream zip = new ZipOutputStream(buffer)) {
-            byte[] chunk = new byte[8192];
-            for (MediaAssetDocument meta : inventory) {
-                zip.putNextEntry(new ZipEntry(FilenameUtils.getName(meta.getOriginalName())));
-                try (InputStream in = client.getObject(GetObjectArgs.builder()
-                    .bucket(props.getBucketMedia())
-                    .object(meta.getObjectKey())
-                    .build())) {
-                    int read;
-                    while ((read = in.read(chunk)) != -1) {
-                        zip.write(chunk, 0, read);
-                    }
-                }
-                zip.closeEntry();
-            }
+            .orElse(null);
+        if (document == null) {
+            shareLookupFilter.recordMediaMiss(mediaId);
+            throw new IllegalArgumentException("Media not available");
         }
-
-        byte[] payload = buffer.toByteArray();
-        client.putObject(PutObjectArgs.builder()
-            .bucket(props.getBucketArchives())
-            .object(objectName)
-            .stream(new ByteArrayInputStream(payload), payload.length, -1)
-            .contentType("application/zip")
-            .build());
+        if (!Objects.equals(document.getGalleryId(), gallery.getId())) {
+            throw new IllegalArgumentException("Media not available");
+        }
+        return document;
     }
 
     private String galleryOriginalKey(String galleryId, String storageName) {
         return GALLERIES_PREFIX + galleryId + "/" + ORIGINALS_FOLDER + storageName;
     }
 
-    private String galleryThumbnailKey(String galleryId, String storageName) {
-        return GALLERIES_PREFIX + galleryId + "/" + THUMBNAILS_FOLDER + storageName + ".jpg";
+    /**
+     * Identifies the settings a thumbnail was rendered with. It is part of the object key, so changing
+     * the configured size or quality never serves or overwrites derivatives made with the old settings.
+     */
+    public String currentThumbnailProfile() {
+        return props.getThumbnailWidth() + "x" + props.getThumbnailHeight() + "q" + props.getThumbnailQuality();
+    }
+
+    /**
+     * Renders the thumbnail for the current profile from the original, then points the asset at it and retires
+     * the previous derivative. Returns false when the asset was deleted while its thumbnail was being rendered.
+     */
+    public boolean regenerateThumbnail(MediaAssetDocument document) throws Exception {
+        String profile = currentThumbnailProfile();
+        byte[] data;
+        try (InputStream in = openObject(props.getBucketMedia(), document.getObjectKey())) {
+            data = in.readAllBytes();
+        }
+        String key = galleryThumbnailKey(document.getGalleryId(), document.getStorageName(), profile);
+        // Switching back to a profile revives its key, which must not be swept any more
+        supersededThumbnailRepository.deleteByObjectKey(key);
+        storeThumbnail(key, renderThumbnail(document.getGalleryId(), data));
+
+        if (!mediaAssetRepository.updateThumbnailProfile(document.getId(), profile)) {
+            removeThumbnail(key);
+            return false;
+        }
+        documentCache.invalidateMedia(document.getId());
+        // The listing links the thumbnail by key, so its ETag has to move too
+        galleryService.recordMediaChanged(document.getGalleryId());
+        String previousKey = thumbnailKey(document);
+        if (!previousKey.equals(key)) {
+            retireThumbnail(previousKey);
+        }
+        return true;
+    }
+
+    /**
+     * Deletes derivatives superseded at least one signed-link lifetime ago. Until then links handed out in
+     * listings and cached by browsers keep resolving to the old thumbnail.
+     */
+    @Scheduled(initialDelayString = "${app.derivatives.sweep-interval:PT15M}", fixedDelayString = "${app.derivatives.sweep-interval:PT15M}")
+    public void sweepSupersededThumbnails() {
+        List<SupersededThumbnailDocument> due;
+        do {
+            due = supersededThumbnailRepository.findByDeleteAfterBefore(Instant.now(), PageRequest.of(0, SWEEP_BATCH_SIZE));
+            for (SupersededThumbnailDocument superseded : due) {
+                removeThumbnail(superseded.getObjectKey());
+                supersededThumbnailRepository.delete(superseded);
+            }
+        } while (due.size() == SWEEP_BATCH_SIZE);
     }
 
-    private String galleryArchiveKey(String galleryId, String signature) {
-        return GALLERIES_PREFIX + galleryId + "/" + ARCHIVES_FOLDER + "media-" + signature + ".zip";
+    // A link signed just before the switch expires at most ttl + expiry-bucket later
+    private void retireThumbnail(String object) {
+        Instant deleteAfter = Instant.now().plus(signingProperties.getTtl()).plus(signingProperties.getExpiryBucket());
+        supersededThumbnailRepository.save(SupersededThumbnailDocument.builder()
+            .objectKey(object)
+            .deleteAfter(deleteAfter)
+            .build());
     }
 
-    private void createThumbnail(String galleryId, String storageName, byte[] data) {
-        String object = galleryThumbnailKey(galleryId, storageName);
-        try {
-            client.statObject(StatObjectArgs.builder()
-                .bucket(props.getBucketThumbnails())
-                .object(object)
-                .build());
-            return;
-        } catch (Exception ignored) {
+    static String thumbnailKey(MediaAssetDocument document) {
+        return galleryThumbnailKey(document.getGalleryId(), document.getStorageName(), document.getThumbnailProfile());
+    }
+
+    private static String galleryThumbnailKey(String galleryId, String storageName, String profile) {
+        if (profile == null) {
+            // Assets uploaded before profiles existed, or whose thumbnail failed and awaits the backfill
+            return GALLERIES_PREFIX + galleryId + "/" + THUMBNAILS_FOLDER + storageName + ".jpg";
         }
+        return GALLERIES_PREFIX + galleryId + "/" + THUMBNAILS_FOLDER + profile + "/" + storageName + ".jpg";
+    }
 
+    private byte[] createThumbnail(String galleryId, String storageName, String profile, byte[] data) {
         try {
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            Thumbnails.of(new ByteArrayInputStream(data))
+            byte[] thumbBytes = renderThumbnail(galleryId, data);
+            storeThumbnail(galleryThumbnailKey(galleryId, storageName, profile), thumbBytes);
+            return thumbBytes;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception ex) {
+            log.warn("Failed to build thumbnail for {}, leaving it to the derivative backfill: {}", storageName, ex.getMessage());
+            return null;
+        }
+    }
+
+    private byte[] renderThumbnail(String galleryId, byte[] data) throws Exception {
+        ThumbnailEncodeEvent event = new ThumbnailEncodeEvent();
+        event.begin();
+        String outcome = "ok";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ThumbnailDecoder.DecodedImage decoded = thumbnailDecoder.decode(data, props.getThumbnailWidth(), props.getThumbnailHeight())) {
+            Thumbnails.Builder<BufferedImage> builder = Thumbnails.of(decoded.image())
                 .size(props.getThumbnailWidth(), props.getThumbnailHeight())
                 .outputQuality(props.getThumbnailQuality() / 100.0)
-                .outputFormat("jpg")
-                .toOutputStream(out);
-            byte[] thumbBytes = out.toByteArray();
-            client.putObject(PutObjectArgs.builder()
-                .bucket(props.getBucketThumbnails())
-                .object(object)
-                .stream(new ByteArrayInputStream(thumbBytes), thumbBytes.length, -1)
-                .contentType("image/jpeg")
-                .build());
+                .outputFormat("jpg");
+            if (decoded.orientation() != null) {
+                builder.addFilter(ExifFilterUtils.getFilterForOrientation(decoded.orientation()));
+            }
+            builder.toOutputStream(out);
         } catch (Exception ex) {
-            log.warn("Failed to build thumbnail for {}: {}", storageName, ex.getMessage());
+            outcome = ex.getClass().getSimpleName();
+            throw ex;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.galleryId = galleryId;
+                event.sourceBytes = data.length;
+                event.thumbnailBytes = out.size();
+                event.outcome = outcome;
+                event.commit();
+            }
         }
+        return out.toByteArray();
     }
 
-    private String computeSignature(List<MediaAssetDocument> inventory) {
-        String fingerprint = inventory.stream()
-            .map(meta -> meta.getObjectKey() + '|' + meta.getSize() + '|' + meta.getUploadedAt().toEpochMilli())
-            .collect(java.util.stream.Collectors.joining("\n"));
-        return DigestUtils.sha1Hex(fingerprint);
+    private void storeThumbnail(String object, byte[] thumbBytes) throws Exception {
+        storage.put(props.getBucketThumbnails(), object, new ByteArrayInputStream(thumbBytes), thumbBytes.length, "image/jpeg", Map.of());
+    }
+
+    private void removeThumbnail(String object) {
+        thumbnailCache.evict(object);
+        try {
+            storage.remove(props.getBucketThumbnails(), object);
+        } catch (Exception ex) {
+            log.debug("No thumbnail to delete at {}", object);
+        }
     }
 
     private String generateObjectName(String originalFilename) {
@@ -449,16 +825,7 @@ public class MediaService {
     }
 
     private String detectType(String mime) {
-        if (mime == null) {
-            return "other";
-        }
-        if (mime.startsWith("image/")) {
-            return "image";
-        }
-        if (mime.startsWith("video/")) {
-            return "video";
-        }
-        return "other";
+        return MediaTypes.detect(mime);
     }
 
     private String generateShareSlug() {
@@ -467,18 +834,41 @@ public class MediaService {
         return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer);
     }
 
-    private StatObjectResponse statObject(String bucket, String object) throws Exception {
-        return client.statObject(StatObjectArgs.builder()
-            .bucket(bucket)
-            .object(object)
-            .build());
+    private StoredObject statObject(String bucket, String object) throws Exception {
+        return storage.stat(bucket, object);
+    }
+
+    private CachedThumbnail loadThumbnail(String object) throws Exception {
+        if (storage.isLocal()) {
+            // Already a local file: serve it in place (sendfile) instead of copying it into the cache tiers
+            StoredObject stat = statObject(props.getBucketThumbnails(), object);
+            return new CachedThumbnail(stat.etag(), stat.size(), null, stat.file());
+        }
+        return thumbnailCache.get(object, () -> {
+            StoredObject stat = statObject(props.getBucketThumbnails(), object);
+            try (InputStream in = openObject(props.getBucketThumbnails(), object)) {
+                byte[] bytes = in.readAllBytes();
+                return new CachedThumbnail(stat.etag(), bytes.length, bytes, null);
+            }
+        });
     }
 
     private InputStream openObject(String bucket, String object) throws Exception {
-        return client.getObject(GetObjectArgs.builder()
-            .bucket(bucket)
-            .object(object)
-            .build());
+        return storage.open(bucket, object);
+    }
+
+    private static ExecutorService newPreviewExecutor() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("preview-batch-");
+        threadFactory.setDaemon(true);
+        // Bounded queue: when it fills, the request thread runs the load itself instead of piling up work
+        return new ThreadPoolExecutor(PREVIEW_FETCH_THREADS, PREVIEW_FETCH_THREADS, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(PREVIEW_FETCH_QUEUE), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    public record ThumbnailRef(String encodedId, String objectKey) {
+    }
+
+    private record BundledThumbnail(String encodedId, byte[] bytes) {
     }
 
     private record PagedResult(List<MediaAssetDocument> documents, long total, Integer nextOffset) {
@@ -0,0 +1,198 @@
+package com.example.lazygallery.service;
+
+import com.example.lazygallery.config.LookupFilterProperties;
+import com.example.lazygallery.persistence.repository.GalleryRepository;
+import com.example.lazygallery.persistence.repository.MediaAssetRepository;
+import com.example.lazygallery.util.BloomFilter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Rejects share-slug and media-ID lookups that cannot succeed without going to Mongo. Bloom filters hold
+ * every shared gallery slug and shared media ID, and lookups that did reach Mongo and found nothing are
+ * remembered for a short TTL. Sharing changes on this node are added immediately, changes made on other
+ * nodes arrive through {@link ChangeStreamInvalidator}, a frequent incremental refresh covers stream outages,
+ * and a periodic full rebuild drops values that are no longer shared. Anything added also clears its
+ * remembered miss. Until the first build completes every lookup is allowed through.
+ */
+@Component
+public class ShareLookupFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(ShareLookupFilter.class);
+    // Headroom so a filter built now stays within its false positive rate until the next rebuild
+    private static final double GROWTH_FACTOR = 2.0;
+    private static final long MIN_CAPACITY = 10_000;
+    // Covers clock skew between nodes and writes that commit while a refresh is running
+    private static final Duration REFRESH_OVERLAP = Duration.ofMinutes(1);
+
+    private final LookupFilterProperties props;
+    private final GalleryRepository galleryRepository;
+    private final MediaAssetRepository mediaAssetRepository;
+    private final Cache<String, Boolean> misses;
+
+    private volatile Filters current;
+    private volatile Filters building;
+    private volatile Instant lastRefresh;
+
+    public ShareLookupFilter(LookupFilterProperties props, GalleryRepository galleryRepository, MediaAssetRepository mediaAssetRepository) {
+        this.props = props;
+        this.galleryRepository = galleryRepository;
+        this.mediaAssetRepository = mediaAssetRepository;
+        this.misses = Caffeine.newBuilder()
+            .expireAfterWrite(props.getNegativeTtl())
+            .maximumSize(props.getNegativeMaxEntries())
+            .build();
+    }
+
+    public boolean mightBeSharedGallery(String shareSlug) {
+        if (shareSlug == null) {
+            return false;
+        }
+        if (misses.getIfPresent(galleryKey(shareSlug)) != null) {
+            return false;
+        }
+        Filters filters = current;
+        return filters == null || filters.gallerySlugs().mightContain(shareSlug);
+    }
+
+    public boolean mightBeSharedMedia(String mediaId) {
+        if (mediaId == null) {
+            return false;
+        }
+        if (misses.getIfPresent(mediaKey(mediaId)) != null) {
+            return false;
+        }
+        Filters filters = current;
+        return filters == null || filters.mediaIds().mightContain(mediaId);
+    }
+
+    public void recordGalleryMiss(String shareSlug) {
+        if (props.isEnabled() && shareSlug != null) {
+            misses.put(galleryKey(shareSlug), Boolean.TRUE);
+        }
+    }
+
+    public void recordMediaMiss(String mediaId) {
+        if (props.isEnabled() && mediaId != null) {
+            misses.put(mediaKey(mediaId), Boolean.TRUE);
+        }
+    }
+
+    public void gallerySharingChanged(String shareSlug, boolean shared) {
+        if (shareSlug == null) {
+            return;
+        }
+        misses.invalidate(galleryKey(shareSlug));
+        if (shared) {
+            addGallery(shareSlug);
+        }
+    }
+
+    public void mediaSharingChanged(String mediaId, boolean shared) {
+        if (mediaId == null) {
+            return;
+        }
+        misses.invalidate(mediaKey(mediaId));
+        if (shared) {
+            addMedia(mediaId);
+        }
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        rebuild();
+    }
+
+    @Scheduled(initialDelayString = "${app.lookup-filter.rebuild-interval:PT1H}", fixedDelayString = "${app.lookup-filter.rebuild-interval:PT1H}")
+    public synchronized void rebuild() {
+        if (!props.isEnabled()) {
+            current = null;
+            return;
+        }
+        Instant started = Instant.now();
+        try {
+            Filters next = new Filters(
+                new BloomFilter(capacity(galleryRepository.countShared()), props.getFalsePositiveRate()),
+                new BloomFilter(capacity(mediaAssetRepository.countShared()), props.getFalsePositiveRate()));
+            building = next;
+            galleryRepository.forEachSharedSlug(null, next.gallerySlugs()::add);
+            mediaAssetRepository.forEachSharedId(null, next.mediaIds()::add);
+            current = next;
+            lastRefresh = started;
+            log.info("Rebuilt share lookup filters in {} ms", Duration.between(started, Instant.now()).toMillis());
+        } catch (Exception ex) {
+            log.warn("Unable to rebuild share lookup filters: {}", ex.getMessage());
+        } finally {
+            building = null;
+        }
+    }
+
+    @Scheduled(initialDelayString = "${app.lookup-filter.refresh-interval:PT10S}", fixedDelayString = "${app.lookup-filter.refresh-interval:PT10S}")
+    public synchronized void refresh() {
+        Filters filters = current;
+        if (filters == null || lastRefresh == null) {
+            return;
+        }
+        if (filters.gallerySlugs().isSaturated() || filters.mediaIds().isSaturated()) {
+            rebuild();
+            return;
+        }
+        Instant started = Instant.now();
+        Instant since = lastRefresh.minus(REFRESH_OVERLAP);
+        try {
+            galleryRepository.forEachSharedSlug(since, slug -> gallerySharingChanged(slug, true));
+            mediaAssetRepository.forEachSharedId(since, mediaId -> mediaSharingChanged(mediaId, true));
+            lastRefresh = started;
+        } catch (Exception ex) {
+            log.warn("Unable to refresh share lookup filters: {}", ex.getMessage());
+        }
+    }
+
+    private void addGallery(String shareSlug) {
+        Filters filters = current;
+        if (filters != null) {
+            filters.gallerySlugs().add(shareSlug);
+        }
+        Filters next = building;
+        if (next != null) {
+            next.gallerySlugs().add(shareSlug);
+        }
+    }
+
+    private void addMedia(String mediaId) {
+        Filters filters = current;
+        if (filters != null) {
+            filters.mediaIds().add(mediaId);
+        }
+        Filters next = building;
+        if (next != null) {
+            next.mediaIds().add(mediaId);
+        }
+    }
+
+    private long capacity(long count) {
+        return Math.max(MIN_CAPACITY, (long) (count * GROWTH_FACTOR));
+    }
+
+    private static String galleryKey(String shareSlug) {
+        return "g:" + shareSlug;
+    }
+
+    private static String mediaKey(String mediaId) {
+        return "m:" + mediaId;
+    }
+
+    private record Filters(BloomFilter gallerySlugs, BloomFilter mediaIds) {
+    }
+}
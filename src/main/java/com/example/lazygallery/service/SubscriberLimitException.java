@@ -0,0 +1,8 @@
+package com.example.lazygallery.service;
+
+public class SubscriberLimitException extends RuntimeException {
+
+    public SubscriberLimitException(String message) {
+        super(message);
+    }
+}
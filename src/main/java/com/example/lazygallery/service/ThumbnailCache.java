@@ -0,0 +1,197 @@
+package com.example.lazygallery.service;
+
+import com.example.lazygallery.config.ThumbnailCacheProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Two-tier cache of thumbnail bytes in front of object storage. Entries are keyed by object key and ETag, with
+ * a small index from object key to the ETag last loaded, so a rewritten object never shares an entry or a
+ * file with its previous version. Disk files live in a folder this class owns inside
+ * {@code app.thumbnail-cache.disk-directory}, get a unique name per spill, and are deleted only
+ * {@code disk-delete-grace} after leaving the cache, because the controller may just have handed one to
+ * Tomcat for sendfile.
+ */
+@Component
+public class ThumbnailCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ThumbnailCache.class);
+    private static final String OWNED_FOLDER = "lazygallery-thumbs-v1";
+    private static final long ETAG_INDEX_ENTRIES = 262_144;
+
+    private final ThumbnailCacheProperties props;
+    private final Cache<String, String> etags;
+    private final Cache<String, CachedThumbnail> memory;
+    private final Cache<String, CachedThumbnail> disk;
+    private final Path directory;
+    private final ScheduledExecutorService deleter;
+    private final Counter memoryHits;
+    private final Counter diskHits;
+    private final Counter misses;
+
+    public ThumbnailCache(ThumbnailCacheProperties props, MeterRegistry registry) throws IOException {
+        this.props = props;
+        // The configured directory may be shared (e.g. /tmp), so only the folder named here is ever cleaned
+        this.directory = Paths.get(props.getDiskDirectory()).resolve(OWNED_FOLDER);
+        if (props.isEnabled()) {
+            // The disk index lives in memory only, so files left by a previous run can never be served
+            FileUtils.deleteDirectory(directory.toFile());
+            Files.createDirectories(directory);
+        }
+        this.deleter = Executors.newSingleThreadScheduledExecutor(newThreadFactory());
+
+        this.etags = Caffeine.newBuilder()
+            .maximumSize(ETAG_INDEX_ENTRIES)
+            .build();
+        this.memory = Caffeine.newBuilder()
+            .maximumWeight(props.getMemoryMaxBytes())
+            .weigher((String key, CachedThumbnail value) -> (int) Math.min(value.size(), Integer.MAX_VALUE))
+            .recordStats()
+            .build();
+        this.disk = Caffeine.newBuilder()
+            .maximumWeight(props.getDiskMaxBytes())
+            .weigher((String key, CachedThumbnail value) -> (int) Math.min(value.size(), Integer.MAX_VALUE))
+            .removalListener(this::onDiskRemoval)
+            .recordStats()
+            .build();
+
+        CaffeineCacheMetrics.monitor(registry, memory, "thumbnails.memory");
+        CaffeineCacheMetrics.monitor(registry, disk, "thumbnails.disk");
+        this.memoryHits = Counter.builder("lazygallery.thumbnail.cache").tag("tier", "memory").register(registry);
+        this.diskHits = Counter.builder("lazygallery.thumbnail.cache").tag("tier", "disk").register(registry);
+        this.misses = Counter.builder("lazygallery.thumbnail.cache").tag("tier", "origin").register(registry);
+    }
+
+    public CachedThumbnail get(String objectKey, ThumbnailLoader loader) throws Exception {
+        if (!props.isEnabled()) {
+            misses.increment();
+            return loader.load();
+        }
+
+        String etag = etags.getIfPresent(objectKey);
+        if (etag != null) {
+            String key = entryKey(objectKey, etag);
+            CachedThumbnail cached = memory.getIfPresent(key);
+            if (cached != null) {
+                memoryHits.increment();
+                return cached;
+            }
+
+            cached = disk.getIfPresent(key);
+            if (cached != null && Files.exists(cached.file())) {
+                diskHits.increment();
+                promote(key, cached);
+                return cached;
+            }
+        }
+
+        misses.increment();
+        CachedThumbnail loaded = loader.load();
+        String key = entryKey(objectKey, loaded.etag());
+        etags.put(objectKey, loaded.etag());
+        if (loaded.size() <= props.getMemoryMaxEntryBytes()) {
+            memory.put(key, loaded);
+        }
+        return spill(key, loaded);
+    }
+
+    public void evict(String objectKey) {
+        String etag = etags.asMap().remove(objectKey);
+        if (etag != null) {
+            memory.invalidate(entryKey(objectKey, etag));
+            disk.invalidate(entryKey(objectKey, etag));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        deleter.shutdownNow();
+    }
+
+    private CachedThumbnail spill(String key, CachedThumbnail loaded) {
+        try {
+            // A fresh name per spill: a pending delayed delete can never hit a file written after it
+            Path target = Files.createTempFile(directory, "thumb-", ".jpg");
+            Files.write(target, loaded.bytes());
+            CachedThumbnail onDisk = new CachedThumbnail(loaded.etag(), loaded.size(), null, target);
+            disk.put(key, onDisk);
+            return new CachedThumbnail(loaded.etag(), loaded.size(), loaded.bytes(), target);
+        } catch (IOException ex) {
+            log.debug("Unable to spill thumbnail {} to disk: {}", key, ex.getMessage());
+            return loaded;
+        }
+    }
+
+    private void promote(String key, CachedThumbnail onDisk) {
+        if (onDisk.size() > props.getMemoryMaxEntryBytes()) {
+            return;
+        }
+        try {
+            memory.put(key, new CachedThumbnail(onDisk.etag(), onDisk.size(), Files.readAllBytes(onDisk.file()), onDisk.file()));
+        } catch (IOException ex) {
+            log.debug("Unable to promote thumbnail {}: {}", key, ex.getMessage());
+        }
+    }
+
+    private void onDiskRemoval(String key, CachedThumbnail value, RemovalCause cause) {
+        if (value == null || value.file() == null) {
+            return;
+        }
+        // Once Tomcat has opened the file the delete is harmless, but sendfile may still be queued until then
+        Path file = value.file();
+        try {
+            deleter.schedule(() -> delete(file), props.getDiskDeleteGrace().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ex) {
+            delete(file);
+        }
+    }
+
+    private void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            log.debug("Unable to delete cached thumbnail {}: {}", file, ex.getMessage());
+        }
+    }
+
+    private static String entryKey(String objectKey, String etag) {
+        return objectKey + "\n" + etag;
+    }
+
+    private static CustomizableThreadFactory newThreadFactory() {
+        CustomizableThreadFactory factory = new CustomizableThreadFactory("thumbnail-cache-");
+        factory.setDaemon(true);
+        return factory;
+    }
+
+    @FunctionalInterface
+    public interface ThumbnailLoader {
+        CachedThumbnail load() throws Exception;
+    }
+
+    /**
+     * A cached thumbnail. {@code bytes} is set when the entry is held on-heap, {@code file} when a
+     * copy exists in the disk tier that can be handed to the container for sendfile.
+     */
+    public record CachedThumbnail(String etag, long size, byte[] bytes, Path file) {
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.lazygallery.service;
+
+import com.example.lazygallery.config.StorageProperties;
+import net.coobird.thumbnailator.util.exif.ExifUtils;
+import net.coobird.thumbnailator.util.exif.Orientation;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Decodes images close to the size they are scaled down to instead of at full resolution. Dimensions are read
+ * from the header first and the reader subsamples rows and columns while decoding, so a 100MP original costs
+ * a few megapixels of raster. Concurrent decodes share a pixel budget, which bounds decode memory regardless
+ * of how many uploads run at the same time.
+ */
+@Component
+public class ThumbnailDecoder {
+
+    // Keep roughly twice the target resolution so the final resize still has detail to filter
+    private static final int OVERSAMPLE = 2;
+
+    private final int budgetPixels;
+    private final Semaphore budget;
+
+    public ThumbnailDecoder(StorageProperties props) {
+        this.budgetPixels = Math.max(props.getThumbnailDecodeBudgetPixels(), 1);
+        this.budget = new Semaphore(budgetPixels, true);
+    }
+
+    public DecodedImage decode(byte[] data, int targetWidth, int targetHeight) throws IOException, InterruptedException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+            if (input == null) {
+                throw new IOException("Unable to open image");
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, false);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int factor = subsampling(width, height, targetWidth, targetHeight);
+                long decodedPixels = (long) ceilDiv(width, factor) * ceilDiv(height, factor);
+                // An image larger than the whole budget still decodes, it just runs alone
+                int permits = (int) Math.min(decodedPixels, budgetPixels);
+
+                budget.acquire(permits);
+                try {
+                    ImageReadParam param = reader.getDefaultReadParam();
+                    param.setSourceSubsampling(factor, factor, 0, 0);
+                    BufferedImage image = reader.read(0, param);
+                    return new DecodedImage(image, readOrientation(reader), permits);
+                } catch (IOException | RuntimeException | Error ex) {
+                    budget.release(permits);
+                    throw ex;
+                }
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static int subsampling(int width, int height, int targetWidth, int targetHeight) {
+        double ratio = Math.min((double) width / (targetWidth * OVERSAMPLE), (double) height / (targetHeight * OVERSAMPLE));
+        return Math.max(1, (int) Math.floor(ratio));
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    private static Orientation readOrientation(ImageReader reader) {
+        try {
+            return ExifUtils.getExifOrientation(reader, 0);
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Holds a share of the decode budget until closed; close it once the raster is no longer needed.
+     */
+    public final class DecodedImage implements AutoCloseable {
+
+        private final BufferedImage image;
+        private final Orientation orientation;
+        private int permits;
+
+        private DecodedImage(BufferedImage image, Orientation orientation, int permits) {
+            this.image = image;
+            this.orientation = orientation;
+            this.permits = permits;
+        }
+
+        public BufferedImage image() {
+            return image;
+        }
+
+        public Orientation orientation() {
+            return orientation;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (permits > 0) {
+                budget.release(permits);
+                permits = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.lazygallery.storage;
+
+import com.example.lazygallery.config.StorageProperties;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * Keeps objects as plain files under {@code app.storage.local-root}, for single-node installs without an S3
+ * server. Each key maps to {@code <bucket>/<aa>/<bb>/<sha256(key)>}, so directories stay small and keys can
+ * never escape the root. Writes go to a temp file in the same bucket, are forced to disk and then moved into
+ * place atomically; content type and user metadata live in a {@code .meta} sidecar written the same way.
+ * {@link StoredObject#file()} is always set, so the web layer can hand files to the container's sendfile.
+ */
+public class LocalObjectStorage implements ObjectStorage {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalObjectStorage.class);
+    private static final String TEMP_FOLDER = ".tmp";
+    private static final String META_SUFFIX = ".meta";
+    private static final String CONTENT_TYPE = "content-type";
+    private static final String METADATA_PREFIX = "meta.";
+
+    private final Path root;
+
+    public LocalObjectStorage(StorageProperties properties) {
+        this.root = Paths.get(properties.getLocalRoot()).toAbsolutePath().normalize();
+    }
+
+    @Override
+    public void ensureBucket(String bucket) throws IOException {
+        Path temp = bucketDir(bucket).resolve(TEMP_FOLDER);
+        Files.createDirectories(temp);
+        // Leftovers of writes interrupted by a crash; nothing ever reads from the temp folder
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(temp)) {
+            for (Path file : stale) {
+                Files.deleteIfExists(file);
+            }
+        }
+        log.info("Using local storage bucket {}", bucketDir(bucket));
+    }
+
+    @Override
+    public void put(String bucket, String key, InputStream data, long size, String contentType, Map<String, String> metadata) throws IOException {
+        writeMetadata(bucket, key, contentType, metadata);
+        Path temp = tempFile(bucket);
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+                 OutputStream out = Channels.newOutputStream(channel)) {
+                data.transferTo(out);
+                channel.force(true);
+            }
+            commit(temp, objectPath(bucket, key));
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public void putFile(String bucket, String key, Path file, String contentType) throws IOException {
+        writeMetadata(bucket, key, contentType, Map.of());
+        Path temp = tempFile(bucket);
+        try {
+            try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ);
+                 FileChannel target = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                transfer(source, 0, source.size(), target);
+                target.force(true);
+            }
+            commit(temp, objectPath(bucket, key));
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public void compose(String bucket, String key, List<ObjectSlice> sources, String contentType) throws IOException {
+        writeMetadata(bucket, key, contentType, Map.of());
+        Path temp = tempFile(bucket);
+        try {
+            try (FileChannel target = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                for (ObjectSlice slice : sources) {
+                    try (FileChannel source = FileChannel.open(objectPath(bucket, slice.key()), StandardOpenOption.READ)) {
+                        long length = slice.length() != null ? slice.length() : source.size() - slice.offset();
+                        transfer(source, slice.offset(), length, target);
+                    }
+                }
+                target.force(true);
+            }
+            commit(temp, objectPath(bucket, key));
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public StoredObject stat(String bucket, String key) throws IOException {
+        Path path = objectPath(bucket, key);
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        // Objects are immutable once committed, so size and commit time identify a version
+        String etag = Long.toHexString(attributes.size()) + "-" + Long.toHexString(attributes.lastModifiedTime().toMillis());
+        return new StoredObject(attributes.size(), etag, readMetadata(path).getProperty(CONTENT_TYPE), path);
+    }
+
+    @Override
+    public InputStream open(String bucket, String key) throws IOException {
+        return Files.newInputStream(objectPath(bucket, key));
+    }
+
+    @Override
+    public void remove(String bucket, String key) throws IOException {
+        // Like S3, removing a missing key is not an error
+        Path path = objectPath(bucket, key);
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(metadataPath(path));
+    }
+
+    @Override
+    public boolean isLocal() {
+        return true;
+    }
+
+    private Path objectPath(String bucket, String key) {
+        String hash = DigestUtils.sha256Hex(key);
+        return bucketDir(bucket).resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    private Path bucketDir(String bucket) {
+        Path dir = root.resolve(bucket).normalize();
+        if (!dir.getParent().equals(root)) {
+            throw new IllegalArgumentException("Invalid bucket name");
+        }
+        return dir;
+    }
+
+    private Path tempFile(String bucket) throws IOException {
+        Path temp = bucketDir(bucket).resolve(TEMP_FOLDER).resolve(UUID.randomUUID().toString());
+        Files.createDirectories(temp.getParent());
+        return Files.createFile(temp);
+    }
+
+    private void commit(Path temp, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void transfer(FileChannel source, long position, long length, FileChannel target) throws IOException {
+        // transferTo may move fewer bytes than asked for, e.g. when the kernel caps a single sendfile/copy call
+        long done = 0;
+        while (done < length) {
+            long moved = source.transferTo(position + done, length - done, target);
+            if (moved <= 0) {
+                throw new IOException("Source ended early while composing object");
+            }
+            done += moved;
+        }
+    }
+
+    private void writeMetadata(String bucket, String key, String contentType, Map<String, String> metadata) throws IOException {
+        Properties meta = new Properties();
+        if (contentType != null) {
+            meta.setProperty(CONTENT_TYPE, contentType);
+        }
+        metadata.forEach((name, value) -> meta.setProperty(METADATA_PREFIX + name, value));
+        Path temp = tempFile(bucket);
+        try {
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                meta.store(writer, null);
+            }
+            commit(temp, metadataPath(objectPath(bucket, key)));
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private Properties readMetadata(Path object) throws IOException {
+        Properties meta = new Properties();
+        try (Reader reader = Files.newBufferedReader(metadataPath(object), StandardCharsets.UTF_8)) {
+            meta.load(reader);
+        } catch (NoSuchFileException ex) {
+            // Metadata is optional; the object itself is authoritative
+        }
+        return meta;
+    }
+
+    private Path metadataPath(Path object) {
+        return object.resolveSibling(object.getFileName() + META_SUFFIX);
+    }
+}
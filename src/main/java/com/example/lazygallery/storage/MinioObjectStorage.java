@@ -0,0 +1,139 @@
+package com.example.lazygallery.storage;
+
+import com.example.lazygallery.config.StorageProperties;
+import com.example.lazygallery.diagnostics.StorageCallEvent;
+import io.minio.BucketExistsArgs;
+import io.minio.ComposeObjectArgs;
+import io.minio.ComposeSource;
+import io.minio.GetObjectArgs;
+import io.minio.MakeBucketArgs;
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import io.minio.RemoveObjectArgs;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import io.minio.UploadObjectArgs;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+@RequiredArgsConstructor
+public class MinioObjectStorage implements ObjectStorage {
+
+    private static final Logger log = LoggerFactory.getLogger(MinioObjectStorage.class);
+
+    private final MinioClient client;
+    private final StorageProperties properties;
+
+    @Override
+    public void ensureBucket(String bucket) throws Exception {
+        boolean exists = record("bucketExists", bucket, null, 0,
+            () -> client.bucketExists(BucketExistsArgs.builder().bucket(bucket).build()));
+        if (!exists) {
+            log.info("Creating MinIO bucket {}", bucket);
+            MakeBucketArgs.Builder builder = MakeBucketArgs.builder().bucket(bucket);
+            if (properties.getRegion() != null && !properties.getRegion().isBlank()) {
+                builder.region(properties.getRegion());
+            }
+            record("makeBucket", bucket, null, 0, () -> {
+                client.makeBucket(builder.build());
+                return null;
+            });
+        }
+    }
+
+    @Override
+    public void put(String bucket, String key, InputStream data, long size, String contentType, Map<String, String> metadata) throws Exception {
+        record("putObject", bucket, key, size, () -> client.putObject(PutObjectArgs.builder()
+            .bucket(bucket)
+            .object(key)
+            .stream(data, size, -1)
+            .contentType(contentType)
+            .userMetadata(metadata)
+            .build()));
+    }
+
+    @Override
+    public void putFile(String bucket, String key, Path file, String contentType) throws Exception {
+        record("uploadObject", bucket, key, Files.size(file), () -> client.uploadObject(UploadObjectArgs.builder()
+            .bucket(bucket)
+            .object(key)
+            .filename(file.toString())
+            .contentType(contentType)
+            .build()));
+    }
+
+    @Override
+    public void compose(String bucket, String key, List<ObjectSlice> sources, String contentType) throws Exception {
+        record("composeObject", bucket, key, 0, () -> client.composeObject(ComposeObjectArgs.builder()
+            .bucket(bucket)
+            .object(key)
+            .sources(sources.stream()
+                .map(slice -> ComposeSource.builder()
+                    .bucket(bucket)
+                    .object(slice.key())
+                    .offset(slice.offset())
+                    .length(slice.length())
+                    .build())
+                .toList())
+            .headers(Map.of("Content-Type", contentType))
+            .build()));
+    }
+
+    @Override
+    public StoredObject stat(String bucket, String key) throws Exception {
+        StatObjectResponse stat = record("statObject", bucket, key, 0, () -> client.statObject(StatObjectArgs.builder()
+            .bucket(bucket)
+            .object(key)
+            .build()));
+        return new StoredObject(stat.size(), stat.etag(), stat.contentType(), null);
+    }
+
+    @Override
+    public InputStream open(String bucket, String key) throws Exception {
+        return record("getObject", bucket, key, 0, () -> client.getObject(GetObjectArgs.builder()
+            .bucket(bucket)
+            .object(key)
+            .build()));
+    }
+
+    @Override
+    public void remove(String bucket, String key) throws Exception {
+        record("removeObject", bucket, key, 0, () -> {
+            client.removeObject(RemoveObjectArgs.builder()
+                .bucket(bucket)
+                .object(key)
+                .build());
+            return null;
+        });
+    }
+
+    private <T> T record(String operation, String bucket, String key, long bytes, Callable<T> call) throws Exception {
+        StorageCallEvent event = new StorageCallEvent();
+        event.begin();
+        String outcome = "ok";
+        try {
+            return call.call();
+        } catch (Exception ex) {
+            outcome = ex.getClass().getSimpleName();
+            throw ex;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = operation;
+                event.bucket = bucket;
+                event.objectKey = key;
+                event.bytes = bytes;
+                event.outcome = outcome;
+                event.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.lazygallery.storage;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bucket/key object store behind media, thumbnails and archives. Selected with {@code app.storage.engine}:
+ * {@code minio} (default) talks to an S3-compatible server, {@code local} keeps objects on the local disk.
+ */
+public interface ObjectStorage {
+
+    void ensureBucket(String bucket) throws Exception;
+
+    void put(String bucket, String key, InputStream data, long size, String contentType, Map<String, String> metadata) throws Exception;
+
+    void putFile(String bucket, String key, Path file, String contentType) throws Exception;
+
+    /**
+     * Writes the concatenation of the given slices of existing objects in the same bucket to {@code key}.
+     */
+    void compose(String bucket, String key, List<ObjectSlice> sources, String contentType) throws Exception;
+
+    StoredObject stat(String bucket, String key) throws Exception;
+
+    InputStream open(String bucket, String key) throws Exception;
+
+    void remove(String bucket, String key) throws Exception;
+
+    /**
+     * True when every {@link StoredObject} carries a local {@code file}.
+     */
+    default boolean isLocal() {
+        return false;
+    }
+
+    /**
+     * Object attributes. {@code file} is set when the engine keeps the object as a plain local file, which lets
+     * callers serve it zero-copy instead of streaming it through the JVM.
+     */
+    record StoredObject(long size, String etag, String contentType, Path file) {
+    }
+
+    /**
+     * A byte range of an object; a null {@code length} runs to the end.
+     */
+    record ObjectSlice(String key, long offset, Long length) {
+    }
+}
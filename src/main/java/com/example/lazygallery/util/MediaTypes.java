@@ -0,0 +1,27 @@
+package com.example.lazygallery.util;
+
+import java.util.List;
+
+public final class MediaTypes {
+
+    public static final String IMAGE = "image";
+    public static final String VIDEO = "video";
+    public static final String OTHER = "other";
+    public static final List<String> ALL = List.of(IMAGE, VIDEO, OTHER);
+
+    private MediaTypes() {
+    }
+
+    public static String detect(String mime) {
+        if (mime == null) {
+            return OTHER;
+        }
+        if (mime.startsWith("image/")) {
+            return IMAGE;
+        }
+        if (mime.startsWith("video/")) {
+            return VIDEO;
+        }
+        return OTHER;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.lazygallery.util;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+public final class OffsetPageRequest extends PageRequest {
+
+    private final long offset;
+
+    private OffsetPageRequest(long offset, int limit, Sort sort) {
+        super((int) (offset / limit), limit, sort);
+        this.offset = offset;
+    }
+
+    public static OffsetPageRequest of(long offset, int limit, Sort sort) {
+        return new OffsetPageRequest(offset, limit, sort);
+    }
+
+    @Override
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public OffsetPageRequest next() {
+        return new OffsetPageRequest(offset + getPageSize(), getPageSize(), getSort());
+    }
+
+    @Override
+    public OffsetPageRequest first() {
+        return new OffsetPageRequest(0, getPageSize(), getSort());
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.lazygallery.util;
+
+/**
+ * Token bucket refilled lazily on access. {@link #tryConsume} takes one token and returns 0, or leaves the
+ * bucket untouched and returns how many nanoseconds the caller would have to wait for the next token.
+ */
+public final class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long refilledAt;
+
+    public TokenBucket(double ratePerSecond, double burst, long now) {
+        this.capacity = Math.max(burst, 1);
+        this.tokensPerNano = ratePerSecond / 1_000_000_000d;
+        this.tokens = capacity;
+        this.refilledAt = now;
+    }
+
+    public synchronized long tryConsume(long now) {
+        if (now > refilledAt) {
+            tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+            refilledAt = now;
+        }
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        if (tokensPerNano <= 0) {
+            return Long.MAX_VALUE;
+        }
+        return (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.lazygallery.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Minimal ZIP64 writer for STORED entries. Unlike {@link java.util.zip.ZipOutputStream} it can start at an
+ * arbitrary offset and re-emit central directory records for entries written earlier, which lets an archive
+ * be extended by appending a new tail (new entries plus a fresh central directory) to an existing prefix.
+ */
+public final class ZipArchiveWriter {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final short VERSION = 45;
+    private static final short FLAG_UTF8 = 0x0800;
+    private static final short ZIP64_EXTRA_ID = 0x0001;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private final FileChannel channel;
+    private final long baseOffset;
+    private final List<Entry> entries;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    public ZipArchiveWriter(FileChannel channel, long baseOffset, List<Entry> existing) {
+        this.channel = channel;
+        this.baseOffset = baseOffset;
+        this.entries = new ArrayList<>(existing);
+    }
+
+    public Entry addEntry(String name, Instant modifiedAt, InputStream data) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        long headerPosition = channel.position();
+        long dosTime = toDosTime(modifiedAt);
+
+        ByteBuffer header = allocate(30 + nameBytes.length + 20);
+        header.putInt(LOCAL_HEADER_SIGNATURE)
+            .putShort(VERSION)
+            .putShort(FLAG_UTF8)
+            .putShort((short) 0)
+            .putInt((int) dosTime)
+            .putInt(0)
+            .putInt((int) ZIP64_MAGIC)
+            .putInt((int) ZIP64_MAGIC)
+            .putShort((short) nameBytes.length)
+            .putShort((short) 20)
+            .put(nameBytes)
+            .putShort(ZIP64_EXTRA_ID)
+            .putShort((short) 16)
+            .putLong(0)
+            .putLong(0);
+        writeFully(header.flip());
+
+        CRC32 crc = new CRC32();
+        long size = 0;
+        byte[] chunk = buffer.array();
+        int read;
+        while ((read = data.read(chunk)) != -1) {
+            crc.update(chunk, 0, read);
+            writeFully(ByteBuffer.wrap(chunk, 0, read));
+            size += read;
+        }
+
+        // Patch CRC and sizes now that the data has been streamed
+        long end = channel.position();
+        channel.write(allocate(4).putInt((int) crc.getValue()).flip(), headerPosition + 14);
+        channel.write(allocate(16).putLong(size).putLong(size).flip(), headerPosition + 30 + nameBytes.length + 4);
+        channel.position(end);
+
+        Entry entry = new Entry(name, crc.getValue(), size, baseOffset + headerPosition, dosTime);
+        entries.add(entry);
+        return entry;
+    }
+
+    /**
+     * Writes the central directory and end records. Returns the absolute offset of the central directory.
+     */
+    public long finish() throws IOException {
+        long centralDirectoryOffset = baseOffset + channel.position();
+        for (Entry entry : entries) {
+            byte[] nameBytes = entry.name().getBytes(StandardCharsets.UTF_8);
+            ByteBuffer record = allocate(46 + nameBytes.length + 28);
+            record.putInt(CENTRAL_HEADER_SIGNATURE)
+                .putShort(VERSION)
+                .putShort(VERSION)
+                .putShort(FLAG_UTF8)
+                .putShort((short) 0)
+                .putInt((int) entry.dosTime())
+                .putInt((int) entry.crc())
+                .putInt((int) ZIP64_MAGIC)
+                .putInt((int) ZIP64_MAGIC)
+                .putShort((short) nameBytes.length)
+                .putShort((short) 28)
+                .putShort((short) 0)
+                .putShort((short) 0)
+                .putShort((short) 0)
+                .putInt(0)
+                .putInt((int) ZIP64_MAGIC)
+                .put(nameBytes)
+                .putShort(ZIP64_EXTRA_ID)
+                .putShort((short) 24)
+                .putLong(entry.size())
+                .putLong(entry.size())
+                .putLong(entry.offset());
+            writeFully(record.flip());
+        }
+        long zip64EndOffset = baseOffset + channel.position();
+        long centralDirectorySize = zip64EndOffset - centralDirectoryOffset;
+
+        ByteBuffer end = allocate(56 + 20 + 22);
+        end.putInt(ZIP64_END_SIGNATURE)
+            .putLong(44)
+            .putShort(VERSION)
+            .putShort(VERSION)
+            .putInt(0)
+            .putInt(0)
+            .putLong(entries.size())
+            .putLong(entries.size())
+            .putLong(centralDirectorySize)
+            .putLong(centralDirectoryOffset);
+        end.putInt(ZIP64_LOCATOR_SIGNATURE)
+            .putInt(0)
+            .putLong(zip64EndOffset)
+            .putInt(1);
+        int count = entries.size() < ZIP64_MAGIC_COUNT ? entries.size() : ZIP64_MAGIC_COUNT;
+        end.putInt(END_SIGNATURE)
+            .putShort((short) 0)
+            .putShort((short) 0)
+            .putShort((short) count)
+            .putShort((short) count)
+            .putInt((int) Math.min(centralDirectorySize, ZIP64_MAGIC))
+            .putInt((int) Math.min(centralDirectoryOffset, ZIP64_MAGIC))
+            .putShort((short) 0);
+        writeFully(end.flip());
+        return centralDirectoryOffset;
+    }
+
+    public List<Entry> getEntries() {
+        return List.copyOf(entries);
+    }
+
+    private void writeFully(ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+
+    private static ByteBuffer allocate(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static long toDosTime(Instant instant) {
+        LocalDateTime time = LocalDateTime.ofInstant(instant, ZoneOffset.UTC);
+        if (time.getYear() < 1980) {
+            time = LocalDateTime.of(1980, 1, 1, 0, 0);
+        }
+        long date = ((long) (time.getYear() - 1980) << 9) | ((long) time.getMonthValue() << 5) | time.getDayOfMonth();
+        long clock = ((long) time.getHour() << 11) | ((long) time.getMinute() << 5) | (time.getSecond() >> 1);
+        return (date << 16) | clock;
+    }
+
+    public record Entry(String name, long crc, long size, long offset, long dosTime) {
+    }
+}
@@ -23,6 +23,10 @@ class GalleryApp {
     // Wake Lock handle
     this.wakeLock = null;
 
+    // Masonry state: tiles are placed into the shortest column using known aspect ratios
+    this.masonry = { columns: [], heights: [], tiles: [] };
+    window.addEventListener('resize', () => this.relayout());
+
     // Paging state
     this.paging = {
       nextOffset: 0,
@@ -31,33 +35,30 @@ class GalleryApp {
       pageSize: 50
     };
 
+    // Media waiting to come into range, and media whose preview is in flight (el -> load state)
+    this.pendingMedia = new Set();
+    this.loadingMedia = new Map();
+
+    // Prefetch distance grows with scroll velocity and drops back once scrolling stops
+    this.scrollSample = { y: window.scrollY, t: performance.now(), velocity: 0, direction: 1, idle: null };
+    this.lookahead = GalleryApp.LOOKAHEAD_STEPS[0];
+    window.addEventListener('scroll', () => this.trackScroll(), { passive: true });
+
+    // Live feed: when the page names an event stream, deltas replace re-fetching the listing
+    this.itemsById = new Map();
+    this.feedUrl = this.galleryEl.dataset.feed || null;
+    this.feedLive = false;
+
+    // Previews that became visible in the same frame are fetched as one bundle per gallery
+    this.previewQueue = new Map();
+    this.previewFlush = null;
+
     // Observers
-    this.infiniteIO = new IntersectionObserver(async (entries) => {
-      const entry = entries[0];
-      if (entry.isIntersecting) await this.loadNextPage();
-    });
-    this.infiniteIO.observe(this.sentinel);
+    this.createObservers();
 
-    // Lazy load media; prime videos to paint first frame
-    this.lazyIO = new IntersectionObserver((entries) => {
-      for (const e of entries) {
-        if (!e.isIntersecting) continue;
-        const el = e.target;
-        const src = el.dataset.src;
-        if (src) {
-          if (el.tagName === 'VIDEO') {
-            el.src = src;              // set actual source
-            el.preload = 'metadata';   // begin fetching metadata
-            this.primeVideoOnce(el);   // render first frame
-            el.load();
-          } else {
-            el.src = src;              // images: just set src
-          }
-          delete el.dataset.src;
-        }
-        this.lazyIO.unobserve(el);
-      }
-    }, { rootMargin: '200px' });
+    // Thumbnails and listing pages are cached by a service worker; bundled previews are stored from here
+    this.previewCache = null;
+    this.registerServiceWorker();
 
     // Wire events
     this.wireMenu();
@@ -73,6 +74,7 @@ class GalleryApp {
 
     // First load
     this.loadGallery().catch(console.error);
+    if (this.feedUrl) this.connectFeed();
   }
 
   // ===== Wake Lock =====
@@ -170,7 +172,7 @@ class GalleryApp {
       if (!this.fileInput.files || this.fileInput.files.length === 0) return;
       await this.uploadFiles(this.fileInput.files);
       this.fileInput.value = ''; // reset
-      await this.loadGallery();  // refresh list from start
+      if (!this.feedLive) await this.loadGallery(true); // the feed already delivered the new items
     });
   }
 
@@ -218,9 +220,18 @@ class GalleryApp {
         this.etaText.textContent = `ETA: ${GalleryApp.formatEta(etaSec)}`;
       };
 
-      xhr.onload = () => (xhr.status >= 200 && xhr.status < 300)
-        ? resolve()
-        : reject(new Error(`Upload failed (${xhr.status})`));
+      xhr.onload = () => {
+        if (xhr.status === 429) {
+          // Shed by admission control: resend the whole file once the server says it has room
+          uploadedBytes -= lastReported;
+          const wait = Number(xhr.getResponseHeader('Retry-After')) || 2;
+          setTimeout(() => uploadOne(file).then(resolve, reject), wait * 1000);
+          return;
+        }
+        (xhr.status >= 200 && xhr.status < 300)
+          ? resolve()
+          : reject(new Error(`Upload failed (${xhr.status})`));
+      };
       xhr.onerror = () => reject(new Error('Network error during upload.'));
       xhr.send(form);
     });
@@ -245,19 +256,27 @@ class GalleryApp {
   }
 
   // ===== Pagination / Lazy load grid =====
-  async loadGallery() {
-    // full refresh (e.g., after upload)
+  async loadGallery(revalidate = false) {
+    // full refresh (e.g., after upload); revalidate skips the service worker's fresh window
     this.galleryEl.innerHTML = '';
-    this.paging = { nextOffset: 0, loading: false, done: false, pageSize: 50 };
+    this.masonry = { columns: [], heights: [], tiles: [] };
+    this.itemsById = new Map();
+    this.pendingMedia.clear();
+    this.loadingMedia.clear();
+    this.createObservers();
+    this.paging = { nextOffset: 0, loading: false, done: false, pageSize: 50, revalidate };
     await this.loadNextPage();
   }
 
   async loadNextPage() {
     if (this.paging.loading || this.paging.done) return;
     this.paging.loading = true;
+    let loaded = false;
 
     try {
-      const res = await fetch(`/api/media?offset=${this.paging.nextOffset}&limit=${this.paging.pageSize}`);
+      const res = await fetch(`/api/media?offset=${this.paging.nextOffset}&limit=${this.paging.pageSize}`, {
+        cache: this.paging.revalidate ? 'no-cache' : 'default'
+      });
       const { items, nextOffset } = await res.json();
 
       if (this.paging.nextOffset === 0 && items.length === 0) {
@@ -276,28 +295,47 @@ class GalleryApp {
       } else {
         this.paging.nextOffset = nextOffset;
       }
+      loaded = true;
     } catch (err) {
       console.error('loadNextPage error', err);
     } finally {
       this.paging.loading = false;
     }
+    // The sentinel may still be within the lookahead after a page lands; the observer will not fire again for it
+    if (loaded && !this.paging.done && this.sentinel.getBoundingClientRect().top < window.innerHeight + this.lookahead) {
+      requestAnimationFrame(() => this.loadNextPage());
+    }
   }
 
   appendItems(items) {
-    const fragment = document.createDocumentFragment();
+    this.ensureColumns();
     for (const it of items) {
+      if (this.itemsById.has(it.id)) continue; // already delivered by the feed
+      this.itemsById.set(it.id, it);
       const tile = document.createElement('div');
       tile.className = 'tile';
+      tile.dataset.id = it.id;
       const preview = it.previewUrl || it.originalUrl;
 
+      // Reserve the final box up front so the grid never reflows when previews arrive
+      const ratio = (it.width && it.height) ? it.height / it.width : null;
+      if (ratio) {
+        tile.classList.add('sized');
+        tile.style.aspectRatio = `${it.width} / ${it.height}`;
+      }
+      if (it.placeholder) {
+        tile.style.backgroundImage = `url("${it.placeholder}")`;
+      }
+
       let mediaEl;
       if (it.type === 'image') {
         mediaEl = document.createElement('img');
         mediaEl.alt = it.name;
         mediaEl.loading = 'lazy';
         // placeholder to avoid layout shift
-        mediaEl.src = 'data:image/gif;base64,R0lGODlhAQABAIAAAAAAAP///ywAAAAAAQABAAACAUwAOw==';
+        mediaEl.src = GalleryApp.PLACEHOLDER;
         mediaEl.dataset.src = preview; // set preview lazily
+        if (it.previewUrl) mediaEl.dataset.batch = '1';
       } else if (it.type === 'video') {
         mediaEl = document.createElement('video');
         mediaEl.muted = true;        // allow autoplay for priming
@@ -329,15 +367,387 @@ class GalleryApp {
 
       tile.appendChild(mediaEl);
       tile.appendChild(badge);
-      tile.addEventListener('click', () => this.openLightbox(it));
-      fragment.appendChild(tile);
+      tile.addEventListener('click', () => this.openLightbox(this.itemsById.get(it.id) || it));
+      tile.dataset.ratio = String(ratio || GalleryApp.DEFAULT_RATIO);
+      this.masonry.tiles.push(tile);
+      this.placeTile(tile);
 
       // Observe for lazy load (only for those with data-src)
       if (mediaEl.dataset && mediaEl.dataset.src) {
+        this.pendingMedia.add(mediaEl);
         this.lazyIO.observe(mediaEl);
       }
     }
-    this.galleryEl.appendChild(fragment);
+  }
+
+  removeTile(id) {
+    const idx = this.masonry.tiles.findIndex(tile => tile.dataset.id === id);
+    if (idx < 0) return;
+    const [tile] = this.masonry.tiles.splice(idx, 1);
+    const mediaEl = tile.firstElementChild;
+    this.cancelMedia(mediaEl);
+    this.pendingMedia.delete(mediaEl);
+    this.lazyIO.unobserve(mediaEl);
+    tile.remove();
+    this.itemsById.delete(id);
+    // Re-flow the remaining tiles so the columns stay balanced
+    this.masonry.heights.fill(0);
+    this.masonry.tiles.forEach(t => this.placeTile(t));
+  }
+
+  // ===== Live feed =====
+  async connectFeed() {
+    let backoff = 1000;
+    let resync = false;
+    for (;;) {
+      try {
+        const res = await fetch(this.feedUrl, { headers: { Accept: 'text/event-stream' } });
+        if (!res.ok || !res.body) throw new Error(`Feed failed (${res.status})`);
+        // Deltas sent while disconnected are gone: resync the listing once, then follow the stream
+        if (resync) await this.loadGallery(true);
+        this.feedLive = true;
+        backoff = 1000;
+        await GalleryApp.readEventStream(res.body, (name, data) => this.applyFeedEvent(name, JSON.parse(data)));
+      } catch (err) {
+        console.error('feed error', err);
+      }
+      this.feedLive = false;
+      resync = true;
+      await new Promise(resolve => setTimeout(resolve, backoff));
+      backoff = Math.min(backoff * 2, 30000);
+    }
+  }
+
+  applyFeedEvent(name, item) {
+    if (name === 'upload') {
+      this.galleryEl.querySelector(':scope > p')?.remove(); // "No media yet"
+      this.appendItems([item]);
+    } else if (name === 'delete') {
+      this.removeTile(item.id);
+    } else if (name === 'sharing' && this.itemsById.has(item.id)) {
+      this.itemsById.set(item.id, item);
+    } else if (name === 'resync') {
+      // Changed on another node, which only pushes deltas to its own subscribers
+      this.loadGallery(true);
+    }
+  }
+
+  // Minimal text/event-stream parser: frames end with a blank line, comment lines (heartbeats) are skipped
+  static async readEventStream(body, onEvent) {
+    const reader = body.pipeThrough(new TextDecoderStream()).getReader();
+    let buf = '';
+    for (;;) {
+      const { done, value } = await reader.read();
+      if (done) break;
+      buf += value;
+      let end;
+      while ((end = buf.indexOf('\n\n')) >= 0) {
+        const frame = buf.slice(0, end);
+        buf = buf.slice(end + 2);
+        let name = 'message';
+        const data = [];
+        for (const line of frame.split('\n')) {
+          if (line.startsWith('event:')) name = line.slice(6).trim();
+          else if (line.startsWith('data:')) data.push(line.slice(5).replace(/^ /, ''));
+        }
+        if (data.length) onEvent(name, data.join('\n'));
+      }
+    }
+  }
+
+  // ===== Adaptive prefetch =====
+  // rootMargin is fixed per observer, so both observers are rebuilt whenever the lookahead changes
+  createObservers() {
+    this.infiniteIO?.disconnect();
+    this.lazyIO?.disconnect();
+    const rootMargin = `${this.lookahead}px 0px`;
+
+    this.infiniteIO = new IntersectionObserver(async (entries) => {
+      const entry = entries[0];
+      if (entry.isIntersecting) await this.loadNextPage();
+    }, { rootMargin });
+    this.infiniteIO.observe(this.sentinel);
+
+    // Lazy load media; cancel previews for tiles the user has already scrolled past
+    this.lazyIO = new IntersectionObserver((entries) => {
+      for (const e of entries) {
+        if (e.isIntersecting) this.startMedia(e.target);
+        else if (this.scrolledPast(e.boundingClientRect)) this.cancelMedia(e.target);
+      }
+    }, { rootMargin });
+    for (const el of this.pendingMedia) this.lazyIO.observe(el);
+    for (const el of this.loadingMedia.keys()) this.lazyIO.observe(el);
+  }
+
+  trackScroll() {
+    const sample = this.scrollSample;
+    const now = performance.now();
+    const dy = window.scrollY - sample.y;
+    const speed = Math.abs(dy) / Math.max(now - sample.t, 1); // px per ms
+    sample.velocity = sample.velocity * 0.7 + speed * 0.3;
+    if (dy !== 0) sample.direction = Math.sign(dy);
+    sample.y = window.scrollY;
+    sample.t = now;
+
+    // Grow right away, shrink only once scrolling has settled, so the observers are not rebuilt every frame
+    const wanted = Math.min(sample.velocity * GalleryApp.LOOKAHEAD_MS, window.innerHeight * 4);
+    const steps = GalleryApp.LOOKAHEAD_STEPS;
+    const step = steps.find(px => px >= wanted) ?? steps[steps.length - 1];
+    if (step > this.lookahead) this.setLookahead(step);
+    clearTimeout(sample.idle);
+    sample.idle = setTimeout(() => {
+      sample.velocity = 0;
+      this.setLookahead(steps[0]);
+    }, GalleryApp.SCROLL_IDLE_MS);
+  }
+
+  setLookahead(px) {
+    if (px === this.lookahead) return;
+    this.lookahead = px;
+    this.createObservers();
+  }
+
+  scrolledPast(rect) {
+    return this.scrollSample.direction >= 0 ? rect.bottom < 0 : rect.top > window.innerHeight;
+  }
+
+  startMedia(el) {
+    const src = el.dataset.src;
+    if (!src) return;
+    delete el.dataset.src;
+    this.pendingMedia.delete(el);
+    if (el.tagName === 'VIDEO') {
+      el.src = src;              // set actual source
+      el.preload = 'metadata';   // begin fetching metadata
+      this.primeVideoOnce(el);   // render first frame
+      el.load();
+      this.lazyIO.unobserve(el);
+    } else if (el.dataset.batch) {
+      this.queuePreview(el, src); // images with server thumbnails: bundled
+    } else {
+      this.loadDirect(el, src);  // images: just set src
+    }
+  }
+
+  loadDirect(el, url, state = { src: url }) {
+    this.loadingMedia.set(el, state);
+    const done = () => this.finishMedia(el, state);
+    el.addEventListener('load', done, { once: true });
+    el.addEventListener('error', done, { once: true });
+    el.src = url;
+  }
+
+  finishMedia(el, state) {
+    if (this.loadingMedia.get(el) !== state) return; // cancelled or superseded meanwhile
+    this.loadingMedia.delete(el);
+    this.lazyIO.unobserve(el);
+  }
+
+  cancelMedia(el) {
+    const state = this.loadingMedia.get(el);
+    if (!state) return;
+    this.loadingMedia.delete(el);
+    if (state.pending) {
+      state.pending.delete(state.id);
+      // A bundle is a single request: abort it once none of its tiles are wanted any more
+      if (state.controller && state.pending.size === 0) state.controller.abort();
+    } else {
+      el.src = GalleryApp.PLACEHOLDER; // dropping the src cancels the image request
+    }
+    el.dataset.src = state.src;
+    this.pendingMedia.add(el);
+  }
+
+  // ===== Batched previews =====
+  queuePreview(el, previewUrl) {
+    const idx = previewUrl.indexOf(GalleryApp.PREVIEW_MARKER);
+    if (idx < 0) { this.loadDirect(el, previewUrl); return; }
+    const batchUrl = previewUrl.slice(0, idx) + '/files/previews';
+    const id = previewUrl.slice(idx + GalleryApp.PREVIEW_MARKER.length);
+    const state = { src: previewUrl, id, pending: null, controller: null };
+    this.loadingMedia.set(el, state);
+    if (this.previewCache) this.lookupPreview(el, state, batchUrl);
+    else this.enqueuePreview(el, state, batchUrl);
+  }
+
+  async lookupPreview(el, state, batchUrl) {
+    let hit;
+    try {
+      hit = await this.previewCache.match(GalleryApp.previewKey(state.src));
+    } catch (_) {
+      // cache unavailable (e.g. storage cleared): fetch as usual
+    }
+    if (this.loadingMedia.get(el) !== state) return; // scrolled past while the cache was consulted
+    if (hit) this.showPreview(el, state, await hit.blob());
+    else this.enqueuePreview(el, state, batchUrl);
+  }
+
+  enqueuePreview(el, state, batchUrl) {
+    if (!this.previewQueue.has(batchUrl)) this.previewQueue.set(batchUrl, new Map());
+    const pending = this.previewQueue.get(batchUrl);
+    state.pending = pending;
+    pending.set(state.id, { el, state });
+    if (pending.size >= GalleryApp.PREVIEW_BATCH) {
+      this.previewQueue.delete(batchUrl);
+      this.fetchPreviewBundle(batchUrl, pending);
+    } else if (!this.previewFlush) {
+      this.previewFlush = requestAnimationFrame(() => this.flushPreviews());
+    }
+  }
+
+  flushPreviews() {
+    this.previewFlush = null;
+    const batches = this.previewQueue;
+    this.previewQueue = new Map();
+    for (const [batchUrl, pending] of batches) this.fetchPreviewBundle(batchUrl, pending);
+  }
+
+  async fetchPreviewBundle(batchUrl, pending) {
+    if (pending.size === 0) return; // every tile was scrolled past before the flush
+    const controller = new AbortController();
+    const urls = new Map();
+    for (const [id, { state }] of pending) {
+      state.controller = controller;
+      urls.set(id, state.src);
+    }
+    try {
+      // The signed bundle endpoint rate-limits by the gallery of one of its tokens; the others ignore it
+      const scope = encodeURIComponent(pending.keys().next().value);
+      const res = await fetch(`${batchUrl}?scope=${scope}`, {
+        method: 'POST',
+        headers: { 'Content-Type': 'application/json' },
+        body: JSON.stringify({ ids: Array.from(pending.keys()) }),
+        signal: controller.signal
+      });
+      if (!res.ok || !res.body) throw new Error(`Preview bundle failed (${res.status})`);
+      await GalleryApp.readPreviewBundle(res.body, (id, bytes) => {
+        if (bytes.length === 0) return;
+        const blob = new Blob([bytes], { type: 'image/jpeg' });
+        this.storePreview(urls.get(id), blob); // already downloaded, keep it even if its tile was scrolled past
+        const target = pending.get(id);
+        if (!target) return;
+        pending.delete(id);
+        this.showPreview(target.el, target.state, blob);
+      });
+    } catch (err) {
+      if (err.name === 'AbortError') return;
+      console.error('preview bundle error', err);
+    }
+    // Anything the bundle did not deliver falls back to the individual preview endpoint
+    for (const { el, state } of pending.values()) this.loadDirect(el, state.src);
+  }
+
+  showPreview(el, state, blob) {
+    const url = URL.createObjectURL(blob);
+    el.addEventListener('load', () => URL.revokeObjectURL(url), { once: true });
+    el.addEventListener('error', () => URL.revokeObjectURL(url), { once: true });
+    state.pending = null;
+    state.controller = null;
+    this.loadDirect(el, url, state);
+  }
+
+  // ===== Service worker cache =====
+  async registerServiceWorker() {
+    if (!('serviceWorker' in navigator) || !('caches' in window)) return;
+    try {
+      await navigator.serviceWorker.register('/sw.js');
+      this.previewCache = await caches.open(GalleryApp.CACHE_NAME);
+    } catch (err) {
+      console.error('service worker registration failed', err);
+    }
+  }
+
+  // Bundles are POSTs the worker cannot cache, so their records are stored here and the worker only keeps the budget
+  async storePreview(previewUrl, blob) {
+    const worker = navigator.serviceWorker?.controller;
+    if (!this.previewCache || !worker || !previewUrl) return;
+    const key = GalleryApp.previewKey(previewUrl);
+    try {
+      await this.previewCache.put(key, new Response(blob, {
+        headers: {
+          'Content-Type': 'image/jpeg',
+          'X-SW-Size': String(blob.size),
+          'X-SW-Stored': String(Date.now())
+        }
+      }));
+      worker.postMessage({ type: 'stored', key, size: blob.size });
+    } catch (_) {
+      // quota exceeded or storage disabled: previews still work, just uncached
+    }
+  }
+
+  // Signed preview links roll over every expiry bucket; key by the object they point at instead (same logic as sw.js)
+  static previewKey(previewUrl) {
+    const url = new URL(previewUrl, location.origin);
+    try {
+      const token = url.pathname.split('/').pop();
+      const payload = token.split('.')[1].replace(/-/g, '+').replace(/_/g, '/');
+      const fields = new TextDecoder().decode(Uint8Array.from(atob(payload), c => c.charCodeAt(0))).split('\n');
+      if (fields.length === 3) return `${location.origin}/__cache/${fields[0]}/${encodeURIComponent(fields[1])}`;
+    } catch (_) {
+      // not a signed token, fall through
+    }
+    return url.toString();
+  }
+
+  // Records: u16 id length, UTF-8 id, u32 payload length, payload (big-endian)
+  static async readPreviewBundle(body, onRecord) {
+    const reader = body.getReader();
+    const decoder = new TextDecoder();
+    let buf = new Uint8Array(0);
+    for (;;) {
+      const { done, value } = await reader.read();
+      if (done) break;
+      const merged = new Uint8Array(buf.length + value.length);
+      merged.set(buf);
+      merged.set(value, buf.length);
+      buf = merged;
+
+      let pos = 0;
+      while (buf.length - pos >= 2) {
+        const view = new DataView(buf.buffer, buf.byteOffset + pos);
+        const idLen = view.getUint16(0);
+        if (buf.length - pos < 2 + idLen + 4) break;
+        const size = view.getUint32(2 + idLen);
+        const start = pos + 2 + idLen + 4;
+        if (buf.length < start + size) break;
+        onRecord(decoder.decode(buf.subarray(pos + 2, pos + 2 + idLen)), buf.slice(start, start + size));
+        pos = start + size;
+      }
+      buf = buf.slice(pos);
+    }
+  }
+
+  // ===== Masonry =====
+  columnCount() {
+    const width = this.galleryEl.clientWidth || window.innerWidth;
+    return Math.max(2, Math.floor((width + GalleryApp.GAP) / (GalleryApp.MIN_COLUMN + GalleryApp.GAP)));
+  }
+  ensureColumns() {
+    const count = this.columnCount();
+    if (this.masonry.columns.length === count) return;
+    this.masonry.columns.forEach(col => col.remove());
+    this.masonry.columns = Array.from({ length: count }, () => {
+      const col = document.createElement('div');
+      col.className = 'gallery-column';
+      this.galleryEl.appendChild(col);
+      return col;
+    });
+    this.masonry.heights = new Array(count).fill(0);
+    this.masonry.tiles.forEach(tile => this.placeTile(tile));
+  }
+  placeTile(tile) {
+    const { columns, heights } = this.masonry;
+    let target = 0;
+    for (let i = 1; i < heights.length; i++) {
+      if (heights[i] < heights[target]) target = i;
+    }
+    heights[target] += Number(tile.dataset.ratio);
+    columns[target].appendChild(tile);
+  }
+  relayout() {
+    if (this.masonry.tiles.length === 0) return;
+    this.ensureColumns();
   }
 
   // ===== Video helpers =====
@@ -371,6 +781,18 @@ class GalleryApp {
   }
 
   // ===== Utils =====
+  static MIN_COLUMN = 190;
+  static GAP = 12;
+  static DEFAULT_RATIO = 200 / 190;
+  static PREVIEW_MARKER = '/files/preview/';
+  static PREVIEW_BATCH = 100;
+  // Transparent 1x1 GIF: an opaque pixel would hide the tile's LQIP background until the preview loads
+  static PLACEHOLDER = 'data:image/gif;base64,R0lGODlhAQABAIAAAAAAAP///yH5BAEAAAAALAAAAAABAAEAAAIBRAA7';
+  static LOOKAHEAD_STEPS = [200, 800, 2000, 4000]; // px beyond the viewport
+  static LOOKAHEAD_MS = 1500;                      // prefetch roughly this much scrolling ahead
+  static SCROLL_IDLE_MS = 150;
+  static CACHE_NAME = 'lazygallery-v1';
+
   static formatEta(sec) {
     const m = Math.floor(sec / 60);
     const s = sec % 60;
@@ -0,0 +1,159 @@
+// Caches thumbnails and listing pages under a byte budget.
+// Served from /sw.js (never fingerprinted): the script URL is the worker's identity and sets its scope.
+const CACHE = 'lazygallery-v1';
+const MAX_BYTES = 64 * 1024 * 1024;
+const LISTING_FRESH_MS = 30 * 1000;
+const PREVIEW_PATH = /^\/api\/files\/preview\/[^/]+$/;
+const LISTING_PATH = /^\/api\/(media|galleries\/[^/]+\/media|shared\/[^/]+\/media)$/;
+const SIZE_HEADER = 'X-SW-Size';
+const STORED_HEADER = 'X-SW-Stored';
+
+// key -> size in least-recently-used order, rebuilt from the cache on first use after a restart
+let index = null;
+let totalBytes = 0;
+
+self.addEventListener('install', () => self.skipWaiting());
+
+self.addEventListener('activate', (event) => {
+  event.waitUntil((async () => {
+    for (const name of await caches.keys()) {
+      if (name !== CACHE) await caches.delete(name);
+    }
+    await self.clients.claim();
+  })());
+});
+
+self.addEventListener('fetch', (event) => {
+  const req = event.request;
+  if (req.method !== 'GET') return;
+  const url = new URL(req.url);
+  if (url.origin !== self.location.origin) return;
+  if (PREVIEW_PATH.test(url.pathname)) event.respondWith(servePreview(event));
+  else if (LISTING_PATH.test(url.pathname)) event.respondWith(serveListing(event));
+});
+
+// The page stores thumbnails that arrive in preview bundles itself and reports them here for the budget
+self.addEventListener('message', (event) => {
+  const { type, key, size } = event.data || {};
+  if (type === 'stored') event.waitUntil(record(key, size));
+});
+
+// Thumbnail keys embed the derivative profile, so a cached thumbnail never goes stale: cache-first, no revalidation
+async function servePreview(event) {
+  const key = previewKey(event.request.url);
+  const cache = await caches.open(CACHE);
+  const cached = await cache.match(key);
+  if (cached) {
+    touch(key);
+    return cached;
+  }
+  const res = await fetch(event.request);
+  if (res.ok) event.waitUntil(store(cache, key, res.clone()));
+  return res;
+}
+
+// Listings are served from cache while fresh, then revalidated with the ETag the server stamped on them
+async function serveListing(event) {
+  const req = event.request;
+  const key = await listingKey(req);
+  const cache = await caches.open(CACHE);
+  const cached = await cache.match(key);
+  if (cached && req.cache !== 'no-cache' && Date.now() - Number(cached.headers.get(STORED_HEADER)) < LISTING_FRESH_MS) {
+    touch(key);
+    return cached;
+  }
+
+  const headers = new Headers(req.headers);
+  const etag = cached?.headers.get('ETag');
+  if (etag) headers.set('If-None-Match', etag);
+  let res;
+  try {
+    res = await fetch(new Request(req, { headers, cache: 'no-store' }));
+  } catch (err) {
+    if (cached) return cached; // offline: a stale page beats an error
+    throw err;
+  }
+  if (res.status === 304 && cached) {
+    const body = await cached.arrayBuffer();
+    const init = { status: cached.status, statusText: cached.statusText, headers: cached.headers };
+    event.waitUntil(store(cache, key, new Response(body, init))); // restarts the fresh window
+    return new Response(body, init);
+  }
+  if (res.ok && res.headers.get('ETag')) event.waitUntil(store(cache, key, res.clone()));
+  return res;
+}
+
+async function store(cache, key, res) {
+  const body = await res.arrayBuffer();
+  const headers = new Headers(res.headers);
+  headers.set(SIZE_HEADER, String(body.byteLength));
+  headers.set(STORED_HEADER, String(Date.now()));
+  await cache.put(key, new Response(body, { status: res.status, statusText: res.statusText, headers }));
+  await record(key, body.byteLength);
+}
+
+async function record(key, size) {
+  await loadIndex();
+  totalBytes -= index.get(key) || 0;
+  index.delete(key);
+  index.set(key, size);
+  totalBytes += size;
+  if (totalBytes <= MAX_BYTES) return;
+  const cache = await caches.open(CACHE);
+  for (const [oldest, bytes] of index) {
+    if (totalBytes <= MAX_BYTES) break;
+    index.delete(oldest);
+    totalBytes -= bytes;
+    await cache.delete(oldest);
+  }
+}
+
+function touch(key) {
+  if (!index || !index.has(key)) return;
+  const size = index.get(key);
+  index.delete(key);
+  index.set(key, size);
+}
+
+async function loadIndex() {
+  if (index) return;
+  const cache = await caches.open(CACHE);
+  const entries = [];
+  for (const req of await cache.keys()) {
+    const res = await cache.match(req);
+    if (!res) continue;
+    entries.push([req.url, Number(res.headers.get(SIZE_HEADER)) || 0, Number(res.headers.get(STORED_HEADER)) || 0]);
+  }
+  entries.sort((a, b) => a[2] - b[2]);
+  if (index) return; // another caller finished first
+  index = new Map(entries.map(([key, size]) => [key, size]));
+  totalBytes = entries.reduce((sum, [, size]) => sum + size, 0);
+}
+
+// Signed preview links roll over every expiry bucket; key by the object they point at instead (same logic as app.js)
+function previewKey(url) {
+  try {
+    const token = new URL(url).pathname.split('/').pop();
+    const payload = token.split('.')[1].replace(/-/g, '+').replace(/_/g, '/');
+    const fields = new TextDecoder().decode(Uint8Array.from(atob(payload), c => c.charCodeAt(0))).split('\n');
+    if (fields.length === 3) return `${self.location.origin}/__cache/${fields[0]}/${encodeURIComponent(fields[1])}`;
+  } catch (_) {
+    // not a signed token, fall through
+  }
+  return url;
+}
+
+// Listings depend on who asks, so the owner and a digest of the share password are part of the key
+async function listingKey(req) {
+  const owner = req.headers.get('X-Owner-Id') || '';
+  const password = req.headers.get('X-Gallery-Password');
+  let secret = '';
+  if (password) {
+    const digest = await crypto.subtle.digest('SHA-256', new TextEncoder().encode(password));
+    secret = Array.from(new Uint8Array(digest), b => b.toString(16).padStart(2, '0')).join('');
+  }
+  const url = new URL(req.url);
+  url.searchParams.set('__owner', owner);
+  url.searchParams.set('__secret', secret);
+  return url.toString();
+}
@@ -0,0 +1,98 @@
+package com.example.lazygallery.controller;
+
+import com.example.lazygallery.config.AdmissionProperties;
+import com.example.lazygallery.config.LookupFilterProperties;
+import com.example.lazygallery.config.SigningProperties;
+import com.example.lazygallery.service.AdmissionControl;
+import com.example.lazygallery.service.FileUrlSigner;
+import com.example.lazygallery.service.ShareLookupFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdmissionFilterTest {
+
+    private static final String PROXY = "203.0.113.7";
+
+    private FileUrlSigner signer;
+    private AdmissionFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        AdmissionProperties admission = new AdmissionProperties();
+        admission.setInteractive(new AdmissionProperties.Lane(0, Duration.ZERO, 0.001, 2));
+        SigningProperties signing = new SigningProperties();
+        signing.setAllowEphemeral(true);
+        signer = new FileUrlSigner(signing);
+        filter = new AdmissionFilter(
+            new AdmissionControl(admission, new SimpleMeterRegistry()),
+            signer,
+            new ShareLookupFilter(new LookupFilterProperties(), null, null)
+        );
+    }
+
+    @Test
+    void shareVisitorsBehindOneAddressAreNotThrottledTogether() throws Exception {
+        String first = "/api/files/preview/" + signer.sign(FileUrlSigner.THUMBNAILS, "galleries/g1/thumbnails/a.jpg");
+        String second = "/api/files/preview/" + signer.sign(FileUrlSigner.THUMBNAILS, "galleries/g2/thumbnails/b.jpg");
+
+        assertThat(get(first)).isEqualTo(200);
+        assertThat(get(first)).isEqualTo(200);
+        assertThat(get(first)).isEqualTo(429);
+
+        assertThat(get(second)).isEqualTo(200);
+        assertThat(get(second)).isEqualTo(200);
+    }
+
+    @Test
+    void signedFilesOfOneGalleryShareABucket() throws Exception {
+        assertThat(get("/api/files/preview/" + signer.sign(FileUrlSigner.THUMBNAILS, "galleries/g1/thumbnails/a.jpg"))).isEqualTo(200);
+        assertThat(get("/api/files/preview/" + signer.sign(FileUrlSigner.THUMBNAILS, "galleries/g1/thumbnails/b.jpg"))).isEqualTo(200);
+
+        MockHttpServletRequest bundle = request("POST", "/api/files/previews");
+        bundle.setParameter("scope", signer.sign(FileUrlSigner.THUMBNAILS, "galleries/g1/thumbnails/c.jpg"));
+        assertThat(status(bundle)).isEqualTo(429);
+    }
+
+    @Test
+    void forgedTokensCountAgainstTheAddress() throws Exception {
+        assertThat(get("/api/files/preview/forged.1")).isEqualTo(200);
+        assertThat(get("/api/files/preview/forged.2")).isEqualTo(200);
+        assertThat(get("/api/files/preview/forged.3")).isEqualTo(429);
+    }
+
+    @Test
+    void rotatingOwnerHeaderDoesNotEscapeTheBucket() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            MockHttpServletRequest request = request("GET", "/api/media");
+            request.addHeader("X-Owner-Id", "owner-" + i);
+            assertThat(status(request)).isEqualTo(200);
+        }
+        MockHttpServletRequest request = request("GET", "/api/media");
+        request.addHeader("X-Owner-Id", "owner-2");
+        assertThat(status(request)).isEqualTo(429);
+    }
+
+    private int get(String uri) throws Exception {
+        return status(request("GET", uri));
+    }
+
+    private int status(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response.getStatus();
+    }
+
+    private static MockHttpServletRequest request(String method, String uri) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        request.setRemoteAddr(PROXY);
+        return request;
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.lazygallery.service;
+
+import com.example.lazygallery.config.DocumentCacheProperties;
+import com.example.lazygallery.config.EventFeedProperties;
+import com.example.lazygallery.config.LookupFilterProperties;
+import com.example.lazygallery.persistence.document.GalleryDocument;
+import com.example.lazygallery.persistence.document.MediaAssetDocument;
+import com.mongodb.MongoCommandException;
+import com.mongodb.ServerAddress;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.BsonDouble;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * ChangeStreamHistoryLost (286) cannot be provoked on a fresh server without rolling the oplog over, so the
+ * driver side is mocked here.
+ */
+class ChangeStreamInvalidatorHistoryLostTest {
+
+    private ChangeStreamInvalidator invalidator;
+    private GalleryEventHub eventHub;
+
+    @AfterEach
+    void tearDown() {
+        invalidator.stop();
+        eventHub.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void historyLostFallsBackToFallbackTtlAndRestartsWithoutToken() throws Exception {
+        MongoTemplate template = mock(MongoTemplate.class);
+        MongoDatabase database = mock(MongoDatabase.class);
+        ChangeStreamIterable<Document> stream = mock(ChangeStreamIterable.class);
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> lost = mock(MongoChangeStreamCursor.class);
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> restarted = mock(MongoChangeStreamCursor.class);
+        when(template.getCollectionName(GalleryDocument.class)).thenReturn("galleries");
+        when(template.getCollectionName(MediaAssetDocument.class)).thenReturn("mediaAssets");
+        when(template.getDb()).thenReturn(database);
+        when(database.watch(anyList())).thenReturn(stream);
+        when(stream.maxAwaitTime(anyLong(), any(TimeUnit.class))).thenReturn(stream);
+        when(stream.resumeAfter(any())).thenReturn(stream);
+        when(stream.cursor()).thenReturn(lost, restarted);
+        when(lost.getResumeToken()).thenReturn(new BsonDocument("_data", new BsonString("826500000000000000")));
+        when(lost.tryNext()).thenReturn(null).thenThrow(historyLost());
+        when(restarted.tryNext()).thenAnswer(invocation -> {
+            Thread.sleep(50);
+            return null;
+        });
+
+        DocumentCacheProperties props = new DocumentCacheProperties();
+        props.setFallbackTtl(Duration.ofMillis(200));
+        props.setReconnectBackoff(Duration.ofSeconds(2));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        DocumentCache cache = new DocumentCache(props, registry);
+        eventHub = new GalleryEventHub(new EventFeedProperties(), registry);
+        invalidator = new ChangeStreamInvalidator(props, template, cache, eventHub,
+            new ShareLookupFilter(new LookupFilterProperties(), null, null), registry);
+        invalidator.start();
+
+        verify(lost, timeout(5000).times(2)).tryNext();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (cache.isStreaming() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(cache.isStreaming()).isFalse();
+
+        // While waiting to reconnect, entries only live for the fallback TTL
+        AtomicInteger loads = new AtomicInteger();
+        GalleryDocument gallery = GalleryDocument.builder().id("g1").name("gallery").build();
+        cache.gallery("g1", id -> {
+            loads.incrementAndGet();
+            return Optional.of(gallery);
+        });
+        Thread.sleep(400);
+        cache.gallery("g1", id -> {
+            loads.incrementAndGet();
+            return Optional.of(gallery);
+        });
+        assertThat(loads).hasValue(2);
+
+        // The lost token is dropped, so the new stream starts from now instead of failing the same way again
+        verify(stream, timeout(5000).times(2)).cursor();
+        verify(stream, never()).resumeAfter(any());
+    }
+
+    private static MongoCommandException historyLost() {
+        BsonDocument response = new BsonDocument("ok", new BsonDouble(0))
+            .append("code", new BsonInt32(286))
+            .append("codeName", new BsonString("ChangeStreamHistoryLost"))
+            .append("errmsg", new BsonString("Resume of change stream was not possible, as the resume point may no longer be in the oplog"));
+        return new MongoCommandException(response, new ServerAddress());
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.lazygallery.service;
+
+import com.example.lazygallery.config.DocumentCacheProperties;
+import com.example.lazygallery.config.EventFeedProperties;
+import com.example.lazygallery.config.LookupFilterProperties;
+import com.example.lazygallery.persistence.document.GalleryDocument;
+import com.mongodb.client.MongoDatabase;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.SimpleMongoClientDatabaseFactory;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Testcontainers(disabledWithoutDocker = true)
+class ChangeStreamInvalidatorTest {
+
+    private static final String DATABASE = "lazygallery-test";
+    private static final Duration TIMEOUT = Duration.ofSeconds(15);
+
+    // Testcontainers starts this one as a single-node replica set, which is what change streams need
+    @Container
+    private static final MongoDBContainer REPLICA_SET = new MongoDBContainer("mongo:7.0");
+
+    @Container
+    private static final GenericContainer<?> STANDALONE = new GenericContainer<>("mongo:7.0").withExposedPorts(27017);
+
+    private final List<Runnable> cleanup = new ArrayList<>();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        cleanup.forEach(Runnable::run);
+    }
+
+    @Test
+    void writeThroughAnotherTemplateEvictsCachedGallery() throws Exception {
+        MongoTemplate app = template(REPLICA_SET.getReplicaSetUrl(DATABASE));
+        MongoTemplate otherNode = template(REPLICA_SET.getReplicaSetUrl(DATABASE));
+        DocumentCache cache = start(app, properties(Duration.ofMinutes(10), Duration.ofSeconds(1)));
+        awaitTrue(cache::isStreaming);
+
+        GalleryDocument gallery = app.insert(gallery());
+        load(cache, app, gallery.getId());
+        load(cache, app, gallery.getId());
+        assertThat(loads).hasValue(1);
+
+        otherNode.updateFirst(new Query(Criteria.where("id").is(gallery.getId())), Update.update("name", "renamed"), GalleryDocument.class);
+
+        awaitTrue(() -> "renamed".equals(load(cache, app, gallery.getId()).getName()));
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void resumesAfterKilledCursorWithoutLosingWrites() throws Exception {
+        MongoTemplate app = template(REPLICA_SET.getReplicaSetUrl(DATABASE));
+        MongoTemplate otherNode = template(REPLICA_SET.getReplicaSetUrl(DATABASE));
+        // A long fallback TTL so only an invalidation can make the entry reload
+        DocumentCache cache = start(app, properties(Duration.ofMinutes(10), Duration.ofSeconds(3)));
+        awaitTrue(cache::isStreaming);
+        GalleryDocument gallery = app.insert(gallery());
+
+        // A kill that lands between getMores surfaces as CursorNotFound, which the driver resumes on its own, so keep
+        // killing until the invalidator itself sees the stream drop
+        awaitTrue(() -> {
+            killChangeStreamCursors(app);
+            return !cache.isStreaming();
+        });
+
+        // Cached and then changed while the stream is down: only a resumed stream can still deliver the write
+        load(cache, app, gallery.getId());
+        otherNode.updateFirst(new Query(Criteria.where("id").is(gallery.getId())), Update.update("name", "changed offline"), GalleryDocument.class);
+
+        awaitTrue(cache::isStreaming);
+        awaitTrue(() -> "changed offline".equals(load(cache, app, gallery.getId()).getName()));
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void standaloneServerStaysOnFallbackTtl() throws Exception {
+        MongoTemplate app = template("mongodb://" + STANDALONE.getHost() + ":" + STANDALONE.getMappedPort(27017) + "/" + DATABASE);
+        DocumentCache cache = start(app, properties(Duration.ofMillis(300), Duration.ofMillis(200)));
+        GalleryDocument gallery = app.insert(gallery());
+
+        Thread.sleep(1500);
+        assertThat(cache.isStreaming()).isFalse();
+
+        load(cache, app, gallery.getId());
+        load(cache, app, gallery.getId());
+        assertThat(loads).hasValue(1);
+        Thread.sleep(500);
+        load(cache, app, gallery.getId());
+        assertThat(loads).hasValue(2);
+        assertThat(cache.isStreaming()).isFalse();
+    }
+
+    private DocumentCache start(MongoTemplate template, DocumentCacheProperties props) {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        DocumentCache cache = new DocumentCache(props, registry);
+        GalleryEventHub eventHub = new GalleryEventHub(new EventFeedProperties(), registry);
+        ShareLookupFilter shareLookupFilter = new ShareLookupFilter(new LookupFilterProperties(), null, null);
+        ChangeStreamInvalidator invalidator = new ChangeStreamInvalidator(props, template, cache, eventHub, shareLookupFilter, registry);
+        invalidator.start();
+        cleanup.add(invalidator::stop);
+        cleanup.add(eventHub::shutdown);
+        return cache;
+    }
+
+    private GalleryDocument load(DocumentCache cache, MongoTemplate template, String galleryId) {
+        return cache.gallery(galleryId, id -> {
+            loads.incrementAndGet();
+            return Optional.ofNullable(template.findById(id, GalleryDocument.class));
+        }).orElseThrow();
+    }
+
+    private void killChangeStreamCursors(MongoTemplate template) {
+        MongoDatabase admin = template.getMongoDatabaseFactory().getMongoDatabase("admin");
+        List<Document> streams = admin.aggregate(List.of(
+            new Document("$currentOp", new Document("idleCursors", true)),
+            new Document("$match", new Document("cursor.originatingCommand.pipeline.0.$changeStream", new Document("$exists", true)))
+        )).into(new ArrayList<>());
+        for (Document op : streams) {
+            String ns = op.getString("ns");
+            String database = ns.substring(0, ns.indexOf('.'));
+            String collection = ns.substring(ns.indexOf('.') + 1);
+            template.getMongoDatabaseFactory().getMongoDatabase(database).runCommand(new Document("killCursors", collection)
+                .append("cursors", List.of(op.get("cursor", Document.class).getLong("cursorId"))));
+        }
+    }
+
+    private MongoTemplate template(String connectionString) {
+        SimpleMongoClientDatabaseFactory factory = new SimpleMongoClientDatabaseFactory(connectionString);
+        cleanup.add(() -> {
+            try {
+                factory.destroy();
+            } catch (Exception ignored) {
+                // best effort
+            }
+        });
+        return new MongoTemplate(factory);
+    }
+
+    private static DocumentCacheProperties properties(Duration fallbackTtl, Duration reconnectBackoff) {
+        DocumentCacheProperties props = new DocumentCacheProperties();
+        props.setTtl(Duration.ofMinutes(10));
+        props.setFallbackTtl(fallbackTtl);
+        props.setReconnectBackoff(reconnectBackoff);
+        props.setMaxReconnectBackoff(reconnectBackoff);
+        return props;
+    }
+
+    private static GalleryDocument gallery() {
+        Instant now = Instant.now();
+        return GalleryDocument.builder()
+            .ownerId("owner")
+            .name("gallery")
+            .shareSlug("slug-" + System.nanoTime())
+            .createdAt(now)
+            .updatedAt(now)
+            .build();
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime() - deadline).as("condition not met within %s", TIMEOUT).isNegative();
+            Thread.sleep(50);
+        }
+    }
+}